@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编译期为使用了@Autowired的class生成{@code CompiledBeanCreator},
+ * IocFactory运行时按命名约定找到生成的class, 直接调用构造器和字段赋值, 不再反射分析该class.
+ * <p>
+ * 只有构造器和所有@Autowired字段都可以被同package代码直接访问时才会生成, 否则运行时仍使用反射
+ */
+@SupportedAnnotationTypes(BeanCreatorProcessor.AUTOWIRED)
+public class BeanCreatorProcessor
+        extends AbstractProcessor
+{
+    static final String AUTOWIRED = "com.github.harbby.gadtry.ioc.Autowired";
+    static final String CREATOR = "com.github.harbby.gadtry.function.Creator";
+    static final String COMPILED_BEAN_CREATOR = "com.github.harbby.gadtry.ioc.CompiledBeanCreator";
+    static final String CLASS_SUFFIX = "$$GadtryBeanCreator";  //与运行时的BeanCreatorGenerator.CLASS_SUFFIX一致
+
+    private final Set<String> processed = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                Element type = element.getEnclosingElement();
+                if (type.getKind() == ElementKind.CLASS && processed.add(((TypeElement) type).getQualifiedName().toString())) {
+                    generate((TypeElement) type);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type)
+    {
+        ExecutableElement constructor = selectConstructor(type);
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (isAutowired(field)) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparing(field -> field.getSimpleName().toString()));
+
+        String reason = checkSupported(type, constructor, fields);
+        if (reason != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "skip generate bean creator, " + reason + ", will use reflection at runtime", type);
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + CLASS_SUFFIX;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(binaryName + CLASS_SUFFIX, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(generateSource(packageName, simpleName, type, constructor, fields));
+            }
+        }
+        catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "generate bean creator failed: " + e, type);
+        }
+    }
+
+    /**
+     * 与运行时ConstructionPlan选择构造器的规则一致
+     */
+    private ExecutableElement selectConstructor(TypeElement type)
+    {
+        TypeElement creator = processingEnv.getElementUtils().getTypeElement(CREATOR);
+        boolean isCreator = creator != null && processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(type.asType()),
+                processingEnv.getTypeUtils().erasure(creator.asType()));
+
+        List<ExecutableElement> constructors = new ArrayList<>();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (isCreator || constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                constructors.add(constructor);
+            }
+        }
+        ExecutableElement noParameter = null;
+        for (ExecutableElement constructor : constructors) {
+            if (isAutowired(constructor)) {
+                return constructor;
+            }
+            if (constructor.getParameters().isEmpty()) {
+                noParameter = constructor;
+            }
+        }
+        if (noParameter != null) {
+            return noParameter;
+        }
+        return constructors.size() == 1 ? constructors.get(0) : null;
+    }
+
+    /**
+     * @return null 可以生成, 否则返回不支持的原因
+     */
+    private static String checkSupported(TypeElement type, ExecutableElement constructor, List<VariableElement> fields)
+    {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "abstract class";
+        }
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement typeElement = (TypeElement) element;
+            if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                return "private class";
+            }
+            if (typeElement.getNestingKind() == NestingKind.MEMBER && !typeElement.getModifiers().contains(Modifier.STATIC)) {
+                return "inner class";
+            }
+            if (typeElement.getNestingKind() == NestingKind.LOCAL || typeElement.getNestingKind() == NestingKind.ANONYMOUS) {
+                return "local class";
+            }
+        }
+        if (constructor == null) {
+            return "no suitable constructor";
+        }
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            return "private constructor";
+        }
+        for (VariableElement parameter : constructor.getParameters()) {
+            if (parameter.asType().getKind().isPrimitive()) {
+                return "primitive constructor parameter " + parameter.getSimpleName();
+            }
+        }
+        for (VariableElement field : fields) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)
+                    || field.asType().getKind().isPrimitive()) {
+                return "field " + field.getSimpleName() + " is not accessible";
+            }
+        }
+        return null;
+    }
+
+    private String generateSource(String packageName, String simpleName, TypeElement type, ExecutableElement constructor, List<VariableElement> fields)
+    {
+        String beanType = type.getQualifiedName().toString();
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n")
+                .append(" * Generated by ").append(BeanCreatorProcessor.class.getName()).append(", do not edit\n")
+                .append(" */\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(simpleName).append('\n')
+                .append("        implements ").append(COMPILED_BEAN_CREATOR).append('<').append(beanType).append(">\n")
+                .append("{\n");
+
+        List<String> parameterTypes = new ArrayList<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            parameterTypes.add(erasure(parameter.asType()));
+        }
+        List<String> fieldTypes = new ArrayList<>();
+        for (VariableElement field : fields) {
+            fieldTypes.add(erasure(field.asType()));
+        }
+
+        appendClassArray(source, "getParameterTypes", parameterTypes);
+        appendClassArray(source, "getFieldTypes", fieldTypes);
+
+        source.append("    @Override\n")
+                .append("    public ").append(beanType).append(" newInstance(Object[] args)\n")
+                .append("    {\n")
+                .append("        return new ").append(beanType).append('(');
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append('(').append(parameterTypes.get(i)).append(") args[").append(i).append(']');
+        }
+        source.append(");\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public void setField(").append(beanType).append(" instance, int index, Object value)\n")
+                .append("    {\n")
+                .append("        switch (index) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            source.append("            case ").append(i).append(":\n")
+                    .append("                instance.").append(fields.get(i).getSimpleName())
+                    .append(" = (").append(fieldTypes.get(i)).append(") value;\n")
+                    .append("                return;\n");
+        }
+        source.append("            default:\n")
+                .append("                throw new IllegalArgumentException(\"field \" + index + \" is not accessible\");\n")
+                .append("        }\n")
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    private static void appendClassArray(StringBuilder source, String methodName, List<String> types)
+    {
+        source.append("    @Override\n")
+                .append("    public Class<?>[] ").append(methodName).append("()\n")
+                .append("    {\n")
+                .append("        return new Class<?>[] {");
+        for (int i = 0; i < types.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append(types.get(i)).append(".class");
+        }
+        source.append("};\n")
+                .append("    }\n\n");
+    }
+
+    private String erasure(TypeMirror type)
+    {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private static boolean isAutowired(Element element)
+    {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(AUTOWIRED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
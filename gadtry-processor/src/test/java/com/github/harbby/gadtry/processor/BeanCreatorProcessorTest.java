@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.processor;
+
+import com.github.harbby.gadtry.ioc.CompiledBeanCreator;
+import com.github.harbby.gadtry.ioc.IocFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class BeanCreatorProcessorTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generateAndUseCompiledBeanCreator()
+            throws Exception
+    {
+        ClassLoader loader = compile("demo/Service.java", "package demo;\n"
+                + "import com.github.harbby.gadtry.ioc.Autowired;\n"
+                + "public class Service {\n"
+                + "    final java.util.HashSet<String> set;\n"
+                + "    @Autowired java.util.ArrayList<String> list;\n"
+                + "    @Autowired Dao dao;\n"
+                + "    @Autowired public Service(java.util.HashSet<String> set) { this.set = set; }\n"
+                + "    public static class Dao {\n"
+                + "        @Autowired public java.util.HashMap<String, String> map;\n"
+                + "    }\n"
+                + "}\n");
+
+        Class<?> serviceClass = loader.loadClass("demo.Service");
+        Class<?> creatorClass = loader.loadClass("demo.Service" + BeanCreatorProcessor.CLASS_SUFFIX);
+        Assert.assertTrue(CompiledBeanCreator.class.isAssignableFrom(creatorClass));
+        CompiledBeanCreator<?> creator = (CompiledBeanCreator<?>) creatorClass.newInstance();
+        Assert.assertEquals(Arrays.asList(java.util.HashSet.class), Arrays.asList(creator.getParameterTypes()));
+        Assert.assertEquals(Arrays.asList(loader.loadClass("demo.Service$Dao"), java.util.ArrayList.class),
+                Arrays.asList(creator.getFieldTypes()));
+        loader.loadClass("demo.Service$Dao" + BeanCreatorProcessor.CLASS_SUFFIX);
+
+        IocFactory iocFactory = IocFactory.create(binder -> binder.bind(serviceClass).noScope());
+        Object service = iocFactory.getInstance(serviceClass);
+        Assert.assertNotNull(getField(service, "set"));
+        Assert.assertNotNull(getField(service, "list"));
+        Assert.assertNotNull(getField(getField(service, "dao"), "map"));
+    }
+
+    @Test
+    public void skipPrivateField()
+            throws Exception
+    {
+        ClassLoader loader = compile("demo/PrivateField.java", "package demo;\n"
+                + "import com.github.harbby.gadtry.ioc.Autowired;\n"
+                + "public class PrivateField {\n"
+                + "    @Autowired private java.util.ArrayList<String> list;\n"
+                + "}\n");
+        try {
+            loader.loadClass("demo.PrivateField" + BeanCreatorProcessor.CLASS_SUFFIX);
+            Assert.fail();
+        }
+        catch (ClassNotFoundException ignored) {
+        }
+
+        Class<?> aClass = loader.loadClass("demo.PrivateField");
+        Object bean = IocFactory.create().getInstance(aClass);
+        Assert.assertNotNull(getField(bean, "list"));
+    }
+
+    private ClassLoader compile(String path, String code)
+            throws Exception
+    {
+        File sourceDir = folder.newFolder("src");
+        File classDir = folder.newFolder("classes");
+        File source = new File(sourceDir, path);
+        Assert.assertTrue(source.getParentFile().mkdirs());
+        Files.write(source.toPath(), code.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int exitCode = compiler.run(null, null, null,
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", BeanCreatorProcessor.class.getName(),
+                "-d", classDir.getPath(),
+                "-s", sourceDir.getPath(),
+                source.getPath());
+        Assert.assertEquals(0, exitCode);
+        return new URLClassLoader(new URL[] {classDir.toURI().toURL()}, this.getClass().getClassLoader());
+    }
+
+    private static Object getField(Object instance, String name)
+            throws Exception
+    {
+        Field field = instance.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(instance);
+    }
+}
@@ -21,6 +21,7 @@ import com.github.harbby.gadtry.ioc.Bean;
 import com.github.harbby.gadtry.ioc.BindMapping;
 import com.github.harbby.gadtry.ioc.IocFactory;
 import com.github.harbby.gadtry.ioc.IocFactoryImpl;
+import com.github.harbby.gadtry.ioc.StartupProfiler;
 
 import java.util.Map;
 
@@ -37,6 +38,8 @@ public class GadTry
     {
         private Bean[] beans;
         private AopFactory aopFactory;
+        private boolean generateBeanCreator = false;
+        private StartupProfiler profiler;
 
         public Builder(Bean... beans)
         {
@@ -54,6 +57,30 @@ public class GadTry
             return this.aop(AopFactory.create(aspects));
         }
 
+        /**
+         * 为bean生成直接调用构造器和字段赋值的{@link com.github.harbby.gadtry.ioc.BeanCreator}代替反射
+         *
+         * @param generateBeanCreator enable
+         * @return Builder
+         */
+        public Builder generateBeanCreator(boolean generateBeanCreator)
+        {
+            this.generateBeanCreator = generateBeanCreator;
+            return this;
+        }
+
+        /**
+         * 记录启动过程中每个bean的构造, 反射和aop代理耗时
+         *
+         * @param profiler profiler
+         * @return Builder
+         */
+        public Builder profiler(StartupProfiler profiler)
+        {
+            this.profiler = profiler;
+            return this;
+        }
+
         public Builder setConfigurationProperties(Map<String, Object> config)
         {
             return this;
@@ -69,8 +96,8 @@ public class GadTry
                     return aopFactory.proxy(key, instance);
                 }
             };
-            BindMapping bindMapping = BindMapping.create(handler, beans);
-            return new IocFactoryImpl(bindMapping, beans);
+            BindMapping bindMapping = BindMapping.create(handler, generateBeanCreator, profiler, beans);
+            return new IocFactoryImpl(bindMapping, beans, generateBeanCreator, profiler);
         }
     }
 }
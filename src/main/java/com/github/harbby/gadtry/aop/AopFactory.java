@@ -17,6 +17,7 @@ package com.github.harbby.gadtry.aop;
 
 import com.github.harbby.gadtry.aop.impl.AopFactoryImpl;
 import com.github.harbby.gadtry.aop.impl.CutModeImpl;
+import com.github.harbby.gadtry.aop.impl.JavassistDirectProxy;
 import com.github.harbby.gadtry.aop.impl.JavassistProxy;
 import com.github.harbby.gadtry.aop.impl.JdkProxy;
 import com.github.harbby.gadtry.aop.impl.Proxy;
@@ -39,6 +40,15 @@ public interface AopFactory
 {
     List<Pointcut> getPointcuts();
 
+    /**
+     * 按绑定的Pointcut代理instance, 没有匹配的Pointcut时直接返回instance.
+     * 代理对象由{@link #directProxy(Class)}生成, driver是接口时也不再是java.lang.reflect.Proxy
+     *
+     * @param interfaces driver class
+     * @param instance 被代理的对象
+     * @param <T> driver type
+     * @return proxy or instance
+     */
     <T> T proxy(Class<T> interfaces, T instance);
 
     /**
@@ -85,6 +95,19 @@ public interface AopFactory
         }
     }
 
+    /**
+     * 使用javassist生成直接调用target的代理, 只有匹配的方法才会执行advice, 其余方法直接委托给instance
+     *
+     * @param pClass 被代理的接口或者父类
+     * @param <T> proxy type
+     * @return ByInstance
+     */
+    public static <T> ByInstance<T> directProxy(Class<T> pClass)
+    {
+        checkState(!Modifier.isFinal(pClass.getModifiers()), pClass + " is final");
+        return instance -> new ProxyBuilder<>(pClass, instance, JavassistDirectProxy.INSTANCE);
+    }
+
     public interface ByInstance<T>
     {
         public ProxyBuilder<T> byInstance(T instance);
@@ -16,19 +16,25 @@
 package com.github.harbby.gadtry.aop.impl;
 
 import com.github.harbby.gadtry.aop.AopFactory;
-import com.github.harbby.gadtry.aop.ProxyContext;
 import com.github.harbby.gadtry.aop.model.Pointcut;
-import com.github.harbby.gadtry.function.exception.Function;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class AopFactoryImpl
         implements AopFactory
 {
     private final List<Pointcut> pointcuts;
-    private final Map<Class<?>, Pointcut> pointcutMap;
+    private final Map<Class<?>, List<Pointcut>> pointcutMap;
+    private final Map<List<Class<?>>, AspectChain> chains = new ConcurrentHashMap<>();
 
     public AopFactoryImpl(List<Pointcut> pointcuts)
     {
@@ -37,7 +43,7 @@ public class AopFactoryImpl
         this.pointcutMap = new HashMap<>();
         pointcuts.forEach(pointcut -> {
             for (Class<?> aClass : pointcut.getSearchClass()) {
-                pointcutMap.put(aClass, pointcut);
+                pointcutMap.computeIfAbsent(aClass, k -> new ArrayList<>()).add(pointcut);
             }
         });
     }
@@ -48,23 +54,39 @@ public class AopFactoryImpl
         return pointcuts;
     }
 
+    /**
+     * driver和instance class上匹配的所有Pointcut按声明顺序融合为一个拦截链, 只生成一层代理.
+     * 拦截链按(driver, instance class)缓存
+     */
     @Override
     public <T> T proxy(Class<T> driver, T instance)
     {
-        Pointcut pointcut = pointcutMap.get(driver);
-        if (pointcut == null) {
-            pointcut = pointcutMap.get(instance.getClass());
-        }
-
-        if (pointcut != null) {
-            final Function<ProxyContext, Object> handler = pointcut.buildRunHandler();
-            return AopFactory.proxy(driver)
+        AspectChain chain = chains.computeIfAbsent(Arrays.asList(driver, instance.getClass()), this::createChain);
+        if (chain != null) {
+            return AopFactory.directProxy(driver)
                     .byInstance(instance)
-                    .whereMethod(pointcut.getMethodFilter())
-                    .around(handler);
+                    .whereMethod(chain.getMethodFilter())
+                    .around(chain);
         }
 
         return instance;
         //throw new IllegalStateException(String.format("Unable to proxy object %s,ecause no cut point rules are configured", instance));
     }
+
+    /**
+     * @param key driver, instance class
+     * @return 没有匹配的Pointcut时返回null, 不缓存
+     */
+    private AspectChain createChain(List<Class<?>> key)
+    {
+        Set<Pointcut> matched = new HashSet<>();
+        for (Class<?> aClass : key) {
+            matched.addAll(pointcutMap.getOrDefault(aClass, Collections.emptyList()));
+        }
+        if (matched.isEmpty()) {
+            return null;
+        }
+        //按Pointcut在pointcuts中的全局声明顺序排列
+        return new AspectChain(pointcuts.stream().filter(matched::contains).collect(Collectors.toList()));
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import com.github.harbby.gadtry.aop.ProxyContext;
+import com.github.harbby.gadtry.aop.model.MethodInfo;
+import com.github.harbby.gadtry.aop.model.Pointcut;
+import com.github.harbby.gadtry.function.Function1;
+import com.github.harbby.gadtry.function.exception.Function;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将同一个class上的多个Pointcut融合为一个拦截链, 只生成一层代理.
+ * 按Pointcut的声明顺序, 先声明的在外层. 每个方法匹配的拦截器只计算一次,
+ * 以MethodInfo(按Method缓存)为key缓存在copy-on-write的IdentityHashMap中
+ */
+final class AspectChain
+        implements Function<ProxyContext, Object>
+{
+    private static final long serialVersionUID = 0L;
+    private static final Function<ProxyContext, Object>[] EMPTY = newArray(0);
+
+    private final List<Pointcut> pointcuts;
+    private final List<Function<ProxyContext, Object>> handlers = new ArrayList<>();
+
+    private volatile Map<MethodInfo, Function<ProxyContext, Object>[]> matched = new IdentityHashMap<>();
+
+    AspectChain(List<Pointcut> pointcuts)
+    {
+        this.pointcuts = pointcuts;
+        for (Pointcut pointcut : pointcuts) {
+            handlers.add(pointcut.buildRunHandler());
+        }
+    }
+
+    /**
+     * 至少一个Pointcut匹配的方法才需要代理
+     */
+    Function1<MethodInfo, Boolean> getMethodFilter()
+    {
+        return methodInfo -> getHandlers(methodInfo).length > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<ProxyContext, Object>[] newArray(int size)
+    {
+        return (Function<ProxyContext, Object>[]) new Function<?, ?>[size];
+    }
+
+    private Function<ProxyContext, Object>[] getHandlers(MethodInfo methodInfo)
+    {
+        Map<MethodInfo, Function<ProxyContext, Object>[]> cache = this.matched;
+        Function<ProxyContext, Object>[] value = cache.get(methodInfo);
+        if (value == null) {
+            List<Function<ProxyContext, Object>> list = new ArrayList<>();
+            for (int i = 0; i < pointcuts.size(); i++) {
+                Function1<MethodInfo, Boolean> filter = pointcuts.get(i).getMethodFilter();
+                if (filter == null || filter.apply(methodInfo)) {
+                    list.add(handlers.get(i));
+                }
+            }
+            value = list.isEmpty() ? EMPTY : list.toArray(newArray(list.size()));
+            Map<MethodInfo, Function<ProxyContext, Object>[]> copy = new IdentityHashMap<>(cache);
+            copy.put(methodInfo, value);
+            this.matched = copy;
+        }
+        return value;
+    }
+
+    @Override
+    public Object apply(ProxyContext context)
+            throws Exception
+    {
+        Function<ProxyContext, Object>[] chain = getHandlers(context.getInfo());
+        if (chain.length == 0) {
+            return context.proceed();
+        }
+        else if (chain.length == 1) {
+            return chain[0].apply(context);  //只有一个拦截器时不需要额外的context
+        }
+        return chain[0].apply(new ChainContext(context, chain, 1, context.getArgs()));
+    }
+
+    /**
+     * proceed时调用链上的下一个拦截器, 最后一个拦截器proceed时调用target
+     */
+    private static final class ChainContext
+            implements ProxyContext
+    {
+        private final ProxyContext root;
+        private final Function<ProxyContext, Object>[] chain;
+        private final int next;
+        private final Object[] args;
+
+        private ChainContext(ProxyContext root, Function<ProxyContext, Object>[] chain, int next, Object[] args)
+        {
+            this.root = root;
+            this.chain = chain;
+            this.next = next;
+            this.args = args;
+        }
+
+        @Override
+        public MethodInfo getInfo()
+        {
+            return root.getInfo();
+        }
+
+        @Override
+        public Object proceed()
+                throws Exception
+        {
+            return proceed(args);
+        }
+
+        @Override
+        public Object proceed(Object[] args)
+                throws Exception
+        {
+            if (next == chain.length) {
+                return root.proceed(args);
+            }
+            return chain[next].apply(new ChainContext(root, chain, next + 1, args));
+        }
+
+        @Override
+        public Object[] getArgs()
+        {
+            return args;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.github.harbby.gadtry.aop.impl;
 
 import com.github.harbby.gadtry.aop.CutMode;
 import com.github.harbby.gadtry.aop.ProxyContext;
+import com.github.harbby.gadtry.aop.model.AsyncAdvices;
 import com.github.harbby.gadtry.aop.model.MethodInfo;
 import com.github.harbby.gadtry.base.Lazys;
 import com.github.harbby.gadtry.function.Function1;
@@ -25,8 +26,12 @@ import com.github.harbby.gadtry.function.exception.Function;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Supplier;
 
+import static com.github.harbby.gadtry.base.Throwables.throwsThrowable;
+
 public class CutModeImpl<T>
         implements CutMode<T>
 {
@@ -70,18 +75,27 @@ public class CutModeImpl<T>
             T instance,
             Function1<MethodInfo, Boolean> filter)
     {
-        InvocationHandler proxyHandler = filter != null ?
-                (InvocationHandler & Serializable) (proxy, method, args) -> {
-                    if (filter.apply(MethodInfo.of(method))) {
-                        return handler.invoke(proxy, method, args);
-                    }
-                    else {
-                        return method.invoke(instance, args);
-                    }
-                }
-                : handler;
+        if (filter == null) {
+            return proxyContext.getProxy(loader, interfaces, handler);
+        }
+        return proxyContext.getProxy(loader, interfaces, handler, instance, filter);
+    }
 
-        return proxyContext.getProxy(loader, interfaces, proxyHandler);
+    /**
+     * direct proxy直接调用target, 否则使用反射
+     */
+    static Object invokeTarget(Object proxy, Method method, Object instance, Object[] args)
+            throws Exception
+    {
+        if (proxy instanceof DirectProxy) {
+            try {
+                return ((DirectProxy) proxy).invokeTarget(method, args);
+            }
+            catch (Throwable e) {
+                throw throwsThrowable(e);
+            }
+        }
+        return method.invoke(instance, args);
     }
 
     @Override
@@ -94,37 +108,7 @@ public class CutModeImpl<T>
     private static <T> InvocationHandler aroundStatic(Function<ProxyContext, Object> aroundHandler, T instance)
     {
         InvocationHandler handler = (InvocationHandler & Serializable) (proxy, method, args) -> {
-            ProxyContext context = new ProxyContext()
-            {
-                private final MethodInfo info = MethodInfo.of(method);
-
-                @Override
-                public MethodInfo getInfo()
-                {
-                    return info;
-                }
-
-                @Override
-                public Object proceed()
-                        throws Exception
-                {
-                    return proceed(args);
-                }
-
-                @Override
-                public Object proceed(Object[] args)
-                        throws Exception
-                {
-                    return method.invoke(instance, args);
-                }
-
-                @Override
-                public Object[] getArgs()
-                {
-                    return args;
-                }
-            };
-            Object returnValue = aroundHandler.apply(context);
+            Object returnValue = aroundHandler.apply(new ProxyContextImpl(proxy, method, instance, args));
             Class<?> returnType = method.getReturnType();
 
             if (returnValue == null && returnType != Void.TYPE && returnType.isPrimitive()) {
@@ -148,7 +132,7 @@ public class CutModeImpl<T>
     {
         InvocationHandler handler = (InvocationHandler & Serializable) (proxy, method, args) -> {
             runnable.apply(MethodInfo.of(method));
-            return method.invoke(instance, args);
+            return invokeTarget(proxy, method, instance, args);
         };
         return handler;
     }
@@ -163,8 +147,13 @@ public class CutModeImpl<T>
     private static <T> InvocationHandler afterReturningStatic(Consumer<MethodInfo> runnable, T instance)
     {
         InvocationHandler handler = (InvocationHandler & Serializable) (proxy, method, args) -> {
-            Object value = method.invoke(instance, args);
-            runnable.apply(MethodInfo.of(method));
+            Object value = invokeTarget(proxy, method, instance, args);
+            if (AsyncAdvices.isAsync(method.getReturnType(), value)) {
+                whenComplete(value, method, runnable, true, false);
+            }
+            else {
+                runnable.apply(MethodInfo.of(method));
+            }
             return value;
         };
         return handler;
@@ -180,12 +169,21 @@ public class CutModeImpl<T>
     private static <T> InvocationHandler afterStatic(Consumer<MethodInfo> runnable, T instance)
     {
         InvocationHandler handler = (InvocationHandler & Serializable) (proxy, method, args) -> {
+            Object value;
             try {
-                return method.invoke(instance, args);
+                value = invokeTarget(proxy, method, instance, args);
             }
-            finally {
+            catch (Throwable e) {
                 runnable.apply(MethodInfo.of(method));
+                throw e;
             }
+            if (AsyncAdvices.isAsync(method.getReturnType(), value)) {
+                whenComplete(value, method, runnable, true, true);
+            }
+            else {
+                runnable.apply(MethodInfo.of(method));
+            }
+            return value;
         };
         return handler;
     }
@@ -200,14 +198,28 @@ public class CutModeImpl<T>
     private static <T> InvocationHandler afterThrowingStatic(Consumer<MethodInfo> runnable, T instance)
     {
         InvocationHandler handler = (InvocationHandler & Serializable) (proxy, method, args) -> {
+            Object value;
             try {
-                return method.invoke(instance, args);
+                value = invokeTarget(proxy, method, instance, args);
             }
-            catch (Exception e) {
+            catch (Throwable e) {
                 runnable.apply(MethodInfo.of(method));
                 throw e;
             }
+            if (AsyncAdvices.isAsync(method.getReturnType(), value)) {
+                whenComplete(value, method, runnable, false, true);
+            }
+            return value;
         };
         return handler;
     }
+
+    private static void whenComplete(Object value, Method method, Consumer<MethodInfo> runnable, boolean onSuccess, boolean onError)
+    {
+        ((CompletionStage<?>) value).whenComplete((result, error) -> {
+            if ((error == null && onSuccess) || (error != null && onError)) {
+                AsyncAdvices.applyAdvice(runnable, MethodInfo.of(method));
+            }
+        });
+    }
 }
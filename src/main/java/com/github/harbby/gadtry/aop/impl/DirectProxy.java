@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link JavassistDirectProxy}生成的代理类实现的接口
+ */
+public interface DirectProxy
+        extends Proxy.ProxyHandler
+{
+    void setTarget(Object target);
+
+    Object getTarget();
+
+    /**
+     * 被advice拦截的方法通过该方法直接调用target, 不使用反射
+     *
+     * @param method 被拦截的方法
+     * @param args 方法参数
+     * @return target方法的返回值, 基本类型会被装箱
+     * @throws Throwable target方法抛出的异常
+     */
+    Object invokeTarget(Method method, Object[] args)
+            throws Throwable;
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import com.github.harbby.gadtry.aop.model.MethodInfo;
+import com.github.harbby.gadtry.function.Function1;
+import com.github.harbby.gadtry.memory.UnsafeHelper;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.Descriptor;
+import javassist.util.proxy.DefineClassHelper;
+import javassist.util.proxy.RuntimeSupport;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.github.harbby.gadtry.base.JavaTypes.getWrapperClass;
+import static com.github.harbby.gadtry.base.MoreObjects.checkState;
+
+/**
+ * 直接调用target的javassist代理.
+ * 生成代理类时根据filter区分方法: 未被拦截的方法直接委托给target, 没有InvocationHandler和反射;
+ * 被拦截的方法调用handler, advice中proceed时通过{@link DirectProxy#invokeTarget(Method, Object[])}直接调用target.
+ * 代理类与filter相关, 按(父类, 被拦截的方法)缓存, 开启磁盘缓存时类名为: SimpleName$$JvstDirectProxy$sha1
+ */
+public final class JavassistDirectProxy
+        implements Proxy
+{
+    public static final JavassistDirectProxy INSTANCE = new JavassistDirectProxy();
+
+    private static final ProxyClassCache proxyCache = new ProxyClassCache("$$JvstDirectProxy");
+
+    private JavassistDirectProxy() {}
+
+    /**
+     * 没有filter时所有方法都调用handler
+     */
+    @Override
+    public <T> T getProxy(ClassLoader loader, Class<?> interfaces, InvocationHandler handler)
+    {
+        return JavassistProxy.newProxyInstance(loader, interfaces, handler);
+    }
+
+    @Override
+    public <T> T getProxy(ClassLoader loader, Class<?> interfaces, InvocationHandler handler, Object target, Function1<MethodInfo, Boolean> filter)
+    {
+        return newProxyInstance(loader, interfaces, handler, target, filter);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T newProxyInstance(ClassLoader loader, Class<?> parent, InvocationHandler handler, Object target, Function1<MethodInfo, Boolean> filter)
+            throws IllegalArgumentException
+    {
+        try {
+            Class<?> aClass = getProxyClass(loader, parent, filter);
+            DirectProxy proxy = (DirectProxy) UnsafeHelper.getUnsafe().allocateInstance(aClass);
+            proxy.setHandler(handler);
+            proxy.setTarget(target);
+            return (T) proxy;
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public static Class<?> getProxyClass(ClassLoader loader, Class<?> parent, Function1<MethodInfo, Boolean> filter)
+            throws Exception
+    {
+        checkState(!Modifier.isFinal(parent.getModifiers()), parent + " is final");
+        if (loader == null) {
+            //see: javassist.CtClass.toClass()
+            loader = Thread.currentThread().getContextClassLoader();
+        }
+        List<Method> methods = proxyMethods(parent);
+        boolean[] advised = new boolean[methods.size()];
+        StringBuilder key = new StringBuilder(parent.getName());
+        for (int i = 0; i < advised.length; i++) {
+            advised[i] = filter.apply(MethodInfo.of(methods.get(i)));
+            key.append(advised[i] ? '1' : '0');
+        }
+
+        final ClassLoader classLoader = loader;
+        return proxyCache.getOrCreate(loader, key.toString(), () -> createProxyClass(classLoader, parent, methods, advised));
+    }
+
+    /**
+     * 被代理的方法, 与{@link JavassistProxy}一致: final, private, static方法不代理.
+     * 按方法签名排序, getMethods()的顺序在不同的JVM进程中不保证一致, 而advised按下标对应方法
+     */
+    private static List<Method> proxyMethods(Class<?> parent)
+            throws NoSuchMethodException
+    {
+        List<Method> all = new ArrayList<>(Arrays.asList(parent.getMethods()));
+        all.addAll(Arrays.asList(parent.getDeclaredMethods()));
+        if (parent.isInterface()) {
+            all.add(Object.class.getMethod("equals", Object.class));
+            all.add(Object.class.getMethod("hashCode"));
+            all.add(Object.class.getMethod("toString"));
+        }
+        Map<String, Method> methods = new TreeMap<>();
+        for (Method method : all) {
+            int modifiers = method.getModifiers();
+            if (!(Modifier.isFinal(modifiers) || Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers))) {
+                methods.putIfAbsent(method.getName() + RuntimeSupport.makeDescriptor(method), method);
+            }
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    /**
+     * 与{@link JavassistProxy}共用磁盘缓存. 生成的代理类只由父类bytecode, 每个方法是否被拦截以及能否直接调用决定,
+     * 这些信息全部参与缓存key的计算
+     */
+    private static Class<?> createProxyClass(ClassLoader loader, Class<?> parent, List<Method> methods, boolean[] advised)
+            throws Exception
+    {
+        //与父类位于同一个package和ClassLoader时, 可以直接调用非public方法
+        boolean samePackage = parent.getClassLoader() == loader && !parent.getName().startsWith("java.");
+        String baseName = samePackage ? parent.getName() : JavassistDirectProxy.class.getPackage().getName() + "." + parent.getSimpleName();
+        boolean[] direct = new boolean[methods.size()];
+        StringBuilder mask = new StringBuilder();
+        for (int i = 0; i < direct.length; i++) {
+            direct[i] = isAccessible(methods.get(i), samePackage ? parent.getPackage() : null);
+            mask.append(advised[i] ? '1' : '0').append(direct[i] ? '1' : '0');
+        }
+
+        File cacheDir = ProxyDiskCache.getCacheDir();
+        String cacheKey = cacheDir == null ? null : ProxyDiskCache.cacheKey(parent, mask.toString());
+        if (cacheKey == null) {
+            return createProxyClass(loader, parent, methods, advised, direct, proxyCache.nextClassName(baseName), null);
+        }
+        String className = baseName + "$$JvstDirectProxy$" + cacheKey;
+        Class<?> cached = ProxyDiskCache.load(cacheDir, className, loader, parent.getProtectionDomain());
+        return cached != null ? cached : createProxyClass(loader, parent, methods, advised, direct, className, cacheDir);
+    }
+
+    private static Class<?> createProxyClass(ClassLoader loader, Class<?> parent, List<Method> methods, boolean[] advised, boolean[] direct,
+            String className, File cacheDir)
+            throws Exception
+    {
+        ClassPool classPool = ProxyClassCache.getClassPool(loader);
+        byte[] bytes;
+        synchronized (classPool) {
+            CtClass proxyClass = classPool.makeClass(className);
+            try {
+                bytes = createProxyClassBytes(classPool, proxyClass, parent, methods, advised, direct);
+            }
+            finally {
+                proxyClass.detach();  //共享的ClassPool不保留代理类
+            }
+        }
+        if (cacheDir != null) {
+            ProxyDiskCache.store(cacheDir, className, bytes);
+        }
+        return DefineClassHelper.toClass(className, null, loader, parent.getProtectionDomain(), bytes);
+    }
+
+    private static byte[] createProxyClassBytes(ClassPool classPool, CtClass proxyClass, Class<?> parent, List<Method> methods, boolean[] advised, boolean[] direct)
+            throws Exception
+    {
+        CtClass parentClass = classPool.get(parent.getName());
+        if (parentClass.isInterface()) {
+            proxyClass.addInterface(parentClass);
+        }
+        else {
+            proxyClass.setSuperclass(parentClass);
+        }
+        proxyClass.addInterface(classPool.get(DirectProxy.class.getName()));
+        proxyClass.setModifiers(javassist.Modifier.PUBLIC | javassist.Modifier.FINAL);
+
+        String parentName = parent.getName();
+        proxyClass.addField(CtField.make("private java.lang.reflect.InvocationHandler handler;", proxyClass));
+        proxyClass.addField(CtField.make("private " + parentName + " target;", proxyClass));
+        proxyClass.addMethod(CtMethod.make("public void setHandler(java.lang.reflect.InvocationHandler handler) { this.handler = $1; }", proxyClass));
+        proxyClass.addMethod(CtMethod.make("public java.lang.reflect.InvocationHandler getHandler() { return this.handler; }", proxyClass));
+        proxyClass.addMethod(CtMethod.make("public void setTarget(Object target) { this.target = (" + parentName + ") $1; }", proxyClass));
+        proxyClass.addMethod(CtMethod.make("public Object getTarget() { return this.target; }", proxyClass));
+        //无参方法共享一个空数组, $args每次调用都会new Object[0]
+        proxyClass.addField(CtField.make("private static final Object[] _emptyArgs = new Object[0];", proxyClass));
+
+        String invokeReflect = JavassistDirectProxy.class.getName() + ".invokeReflect";
+        StringBuilder invokeTarget = new StringBuilder("public Object invokeTarget(java.lang.reflect.Method method, Object[] args) throws Throwable { ");
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            String methodField = "_method" + i;
+            if (advised[i] || !direct[i]) {
+                proxyClass.addField(CtField.make(String.format("private static final java.lang.reflect.Method %s = " +
+                                "javassist.util.proxy.RuntimeSupport.findSuperClassMethod(%s.class, \"%s\", \"%s\");",
+                        methodField, proxyClass.getName(), method.getName(), RuntimeSupport.makeDescriptor(method)), proxyClass));
+            }
+
+            CtMethod proxyMethod = newProxyMethod(classPool, proxyClass, method);
+            if (advised[i]) {
+                String args = method.getParameterCount() == 0 ? "_emptyArgs" : "$args";
+                proxyMethod.setBody("return ($r) this.handler.invoke(this, " + methodField + ", " + args + ");");
+                if (direct[i]) {
+                    invokeTarget.append("if (method == ").append(methodField).append(") { ")
+                            .append(invokeTargetCode(method)).append(" } ");
+                }
+            }
+            else if (direct[i]) {
+                //未被拦截的方法占大多数, 直接生成字节码, 不经过javassist编译器
+                proxyMethod.getMethodInfo().setCodeAttribute(delegateCode(proxyClass, parentClass, method, proxyMethod).toCodeAttribute());
+            }
+            else {
+                proxyMethod.setBody("return ($r) " + invokeReflect + "(" + methodField + ", this.target, $args);");
+            }
+            proxyClass.addMethod(proxyMethod);
+        }
+        invokeTarget.append("return ").append(invokeReflect).append("(method, this.target, args); }");
+        proxyClass.addMethod(CtMethod.make(invokeTarget.toString(), proxyClass));
+
+        if (parentClass.getConstructors().length == 0) {
+            CtConstructor ctConstructor = new CtConstructor(new CtClass[] {}, proxyClass);
+            ctConstructor.setBody(";");
+            proxyClass.addConstructor(ctConstructor);
+        }
+        return proxyClass.toBytecode();
+    }
+
+    /**
+     * 生成this.target.method(args)的字节码
+     */
+    private static Bytecode delegateCode(CtClass proxyClass, CtClass parentClass, Method method, CtMethod proxyMethod)
+            throws Exception
+    {
+        CtClass[] parameterTypes = proxyMethod.getParameterTypes();
+        String descriptor = RuntimeSupport.makeDescriptor(method);
+        Bytecode code = new Bytecode(proxyClass.getClassFile().getConstPool());
+        code.addAload(0);
+        code.addGetfield(proxyClass, "target", Descriptor.of(parentClass));
+        int stackSize = code.addLoadParameters(parameterTypes, 1);
+        if (method.getDeclaringClass() == Object.class) {
+            code.addInvokevirtual(Object.class.getName(), method.getName(), descriptor);
+        }
+        else if (parentClass.isInterface()) {
+            code.addInvokeinterface(parentClass, method.getName(), descriptor, stackSize + 1);
+        }
+        else {
+            code.addInvokevirtual(parentClass, method.getName(), descriptor);
+        }
+        code.addReturn(proxyMethod.getReturnType());
+        code.setMaxLocals(false, parameterTypes, 0);
+        return code;
+    }
+
+    /**
+     * 生成直接调用target并将返回值装箱的代码
+     */
+    private static String invokeTargetCode(Method method)
+    {
+        StringBuilder call = new StringBuilder("this.target.").append(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                call.append(", ");
+            }
+            Class<?> type = parameterTypes[i];
+            if (type.isPrimitive()) {
+                call.append("((").append(getWrapperClass(type).getName()).append(") args[").append(i).append("]).")
+                        .append(type.getName()).append("Value()");
+            }
+            else {
+                call.append('(').append(type.getTypeName()).append(") args[").append(i).append(']');
+            }
+        }
+        call.append(')');
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            return call + "; return null;";
+        }
+        else if (returnType.isPrimitive()) {
+            return "return " + getWrapperClass(returnType).getName() + ".valueOf(" + call + ");";
+        }
+        else {
+            return "return " + call + ";";
+        }
+    }
+
+    private static CtMethod newProxyMethod(ClassPool classPool, CtClass proxyClass, Method method)
+            throws Exception
+    {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        CtClass[] ctParameterTypes = new CtClass[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            ctParameterTypes[i] = classPool.get(parameterTypes[i].getTypeName());
+        }
+        CtMethod proxyMethod = new CtMethod(classPool.get(method.getReturnType().getTypeName()), method.getName(), ctParameterTypes, proxyClass);
+        proxyMethod.setModifiers((method.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED)) | Modifier.FINAL);
+        return proxyMethod;
+    }
+
+    /**
+     * @param proxyPackage 代理类与父类位于同一个package时为父类的package, 否则为null
+     * @return true 代理类可以直接调用该方法
+     */
+    private static boolean isAccessible(Method method, Package proxyPackage)
+    {
+        if (!Modifier.isPublic(method.getModifiers()) && proxyPackage == null) {
+            return false;
+        }
+        if (!isAccessible(method.getReturnType(), proxyPackage)) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isAccessible(type, proxyPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> type, Package proxyPackage)
+    {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers())
+                || (proxyPackage != null && type.getPackage() == proxyPackage);
+    }
+
+    /**
+     * 无法直接调用的方法使用反射调用, 并抛出target的原始异常
+     */
+    public static Object invokeReflect(Method method, Object target, Object[] args)
+            throws Throwable
+    {
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
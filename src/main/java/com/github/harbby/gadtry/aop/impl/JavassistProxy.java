@@ -23,19 +23,29 @@ import javassist.CtClass;
 import javassist.CtConstructor;
 import javassist.CtField;
 import javassist.CtMethod;
-import javassist.LoaderClassPath;
+import javassist.CtNewConstructor;
+import javassist.CtPrimitiveType;
 import javassist.Modifier;
 import javassist.NotFoundException;
 import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.Opcode;
 import javassist.bytecode.annotation.Annotation;
+import javassist.util.proxy.DefineClassHelper;
+import javassist.util.proxy.RuntimeSupport;
 import sun.reflect.CallerSensitive;
 
+import java.io.File;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 
 import static com.github.harbby.gadtry.base.MoreObjects.checkState;
 import static java.util.Objects.requireNonNull;
@@ -43,7 +53,9 @@ import static java.util.Objects.requireNonNull;
 public class JavassistProxy
         implements Serializable
 {
-    private static final Map<ClassLoader, Map<String, Class<?>>> proxyCache = new WeakHashMap<>();
+    private static final ProxyClassCache proxyCache = new ProxyClassCache("$$JvstProxy");
+    private static final String HANDLER_DESC = "Ljava/lang/reflect/InvocationHandler;";
+    private static final String METHOD_DESC = "Ljava/lang/reflect/Method;";
 
     private JavassistProxy() {}
 
@@ -84,83 +96,119 @@ public class JavassistProxy
         return requireNonNull(getCacheOrCreate(loader, parent), "proxyClass is null");
     }
 
-    private static Class<?> getCacheOrCreate(ClassLoader loader, Class<?> parent)
+    /**
+     * 批量获取代理类, 缺失的代理类由当前线程依次生成, 共享同一个ClassPool.
+     * 每个代理类只在生成bytecode时单独对ClassPool加锁, 不会在整个批量生成期间持有锁
+     *
+     * @param loader class loader
+     * @param parents 被代理的接口或者父类
+     * @return parent -> proxy class
+     * @throws Exception 代理类生成失败
+     */
+    public static Map<Class<?>, Class<?>> getProxyClasses(ClassLoader loader, Collection<Class<?>> parents)
             throws Exception
     {
-        String name = parent.getName();
-        if (loader == null) {
-            //see: javassist.CtClass.toClass()
-            loader = Thread.currentThread().getContextClassLoader();
+        final ClassLoader classLoader = getLoader(loader);
+        Map<String, Callable<Class<?>>> creators = new LinkedHashMap<>();
+        for (Class<?> parent : parents) {
+            checkState(!java.lang.reflect.Modifier.isFinal(parent.getModifiers()), parent + " is final");
+            creators.put(parent.getName(), () -> createProxyClass(classLoader, parent));
         }
-
-        Map<String, Class<?>> classMap = proxyCache.get(loader);
-        if (classMap == null) {
-            synchronized (proxyCache) {
-                classMap = proxyCache.get(loader);
-                if (classMap == null) {
-                    Class<?> proxyClass = createProxyClass(loader, parent);
-                    Map<String, Class<?>> tmp = new WeakHashMap<>();  //WeakHashMap
-                    tmp.put(name, proxyClass);
-                    proxyCache.put(loader, tmp);
-                    return proxyClass;
-                }
-            }
+        Map<String, Class<?>> classes = proxyCache.getOrCreateAll(classLoader, creators);
+        Map<Class<?>, Class<?>> proxyClasses = new LinkedHashMap<>();
+        for (Class<?> parent : parents) {
+            proxyClasses.put(parent, classes.get(parent.getName()));
         }
+        return proxyClasses;
+    }
 
-        Class<?> proxy = classMap.get(name);
-        if (proxy == null) {
-            synchronized (classMap) {
-                Class<?> value = classMap.get(name);
-                if (value != null) {
-                    return value;
-                }
-                Class<?> proxyClass = createProxyClass(loader, parent);
-                classMap.put(name, proxyClass);
-                return proxyClass;
-            }
-        }
-        return proxy;
+    private static ClassLoader getLoader(ClassLoader loader)
+    {
+        //see: javassist.CtClass.toClass()
+        return loader == null ? Thread.currentThread().getContextClassLoader() : loader;
     }
 
-    private static Class<?> createProxyClass(ClassLoader loader, Class<?> parent)
+    private static Class<?> getCacheOrCreate(ClassLoader loader, Class<?> parent)
             throws Exception
     {
-        ClassPool classPool = new ClassPool(true);
-        classPool.appendClassPath(new LoaderClassPath(loader));
+        final ClassLoader classLoader = getLoader(loader);
+        return proxyCache.getOrCreate(classLoader, parent.getName(), () -> createProxyClass(classLoader, parent));
+    }
 
-        // New Create Proxy Class
-        CtClass proxyClass = classPool.makeClass(JavassistProxy.class.getPackage().getName() + "." + parent.getSimpleName() + "$$JvstProxy");
-        CtClass parentClass = classPool.get(parent.getName());
+    /**
+     * 开启代理类的磁盘缓存, 也可以通过系统属性gadtry.aop.proxyCacheDir开启, 同时作用于{@link JavassistDirectProxy}.
+     * 开启后代理类使用由父类bytecode hash决定的固定类名, 父类未变化时下次启动直接加载缓存的class文件
+     *
+     * @param dir 缓存目录, null表示关闭
+     */
+    public static void setDiskCacheDir(File dir)
+    {
+        ProxyDiskCache.setCacheDir(dir);
+    }
 
-        // 添加继承父类
-        if (parentClass.isInterface()) {
-            proxyClass.addInterface(parentClass);
-        }
-        else {
-            proxyClass.setSuperclass(parentClass);
+    /**
+     * 优先从磁盘缓存加载, 否则使用ClassLoader共享的ClassPool, 直接通过bytecode api生成方法体, 不经过javassist源码编译器
+     */
+    private static Class<?> createProxyClass(ClassLoader loader, Class<?> parent)
+            throws Exception
+    {
+        String baseName = JavassistProxy.class.getPackage().getName() + "." + parent.getSimpleName();
+        File cacheDir = ProxyDiskCache.getCacheDir();
+        String cacheKey = cacheDir == null ? null : ProxyDiskCache.cacheKey(parent);
+        if (cacheKey == null) {
+            return createProxyClass(loader, parent, proxyCache.nextClassName(baseName), null);
         }
+        String className = baseName + "$$JvstProxy$" + cacheKey;
+        Class<?> cached = ProxyDiskCache.load(cacheDir, className, loader, parent.getProtectionDomain());
+        return cached != null ? cached : createProxyClass(loader, parent, className, cacheDir);
+    }
 
-        // 添加 ProxyHandler 接口
-        installProxyHandlerInterface(classPool, proxyClass);
-
-        // 添加方法和字段
-        installFieldAndMethod(proxyClass, parentClass);
+    private static Class<?> createProxyClass(ClassLoader loader, Class<?> parent, String className, File cacheDir)
+            throws Exception
+    {
+        ClassPool classPool = ProxyClassCache.getClassPool(loader);
+        byte[] bytes;
+        synchronized (classPool) {
+            // New Create Proxy Class
+            CtClass proxyClass = classPool.makeClass(className);
+            try {
+                CtClass parentClass = classPool.get(parent.getName());
+
+                // 添加继承父类
+                if (parentClass.isInterface()) {
+                    proxyClass.addInterface(parentClass);
+                }
+                else {
+                    proxyClass.setSuperclass(parentClass);
+                }
 
-        // 设置代理类的类修饰符
-        proxyClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+                // 添加 ProxyHandler 接口
+                installProxyHandlerInterface(classPool, proxyClass);
 
-        //-- 添加构造器
-        if (parentClass.getConstructors().length == 0) {
-            addVoidConstructor(proxyClass);  //如果没有 任何非私有构造器,则添加一个
-        }
+                // 添加方法和字段
+                installFieldAndMethod(classPool, proxyClass, parentClass);
 
-        // 持久化class到硬盘, 可以直接反编译查看
-        //proxyClass.writeFile(".");
+                // 设置代理类的类修饰符
+                proxyClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
 
-        return proxyClass.toClass(loader, parent.getProtectionDomain());
+                //-- 添加构造器
+                if (parentClass.getConstructors().length == 0) {
+                    proxyClass.addConstructor(CtNewConstructor.defaultConstructor(proxyClass));  //如果没有 任何非私有构造器,则添加一个
+                }
+                bytes = proxyClass.toBytecode();
+            }
+            finally {
+                proxyClass.detach();  //共享的ClassPool不保留代理类
+            }
+        }
+        //ClassPool只在生成字节码时加锁, 写磁盘缓存和defineClass不需要
+        if (cacheDir != null) {
+            ProxyDiskCache.store(cacheDir, className, bytes);
+        }
+        return DefineClassHelper.toClass(className, null, loader, parent.getProtectionDomain(), bytes);
     }
 
-    private static void installFieldAndMethod(CtClass proxyClass, CtClass parentClass)
+    private static void installFieldAndMethod(ClassPool classPool, CtClass proxyClass, CtClass parentClass)
             throws NotFoundException, CannotCompileException
     {
         Map<CtMethod, String> methods = new IdentityHashMap<>();
@@ -176,21 +224,76 @@ public class JavassistProxy
                     Modifier.isStatic(ctMethod.getModifiers()));
         }).forEach(ctMethod -> methods.put(ctMethod, ""));
 
+        ConstPool constPool = proxyClass.getClassFile().getConstPool();
+        CtClass methodType = classPool.get(Method.class.getName());
+        Bytecode staticInit = new Bytecode(constPool);
         int methodIndex = 0;
         for (CtMethod ctMethod : methods.keySet()) {
             final String methodFieldName = "_method" + methodIndex++;
 
-            // 添加字段
-            String fieldCode = "private static final java.lang.reflect.Method %s = " +
-                    "javassist.util.proxy.RuntimeSupport.findSuperClassMethod(%s.class, \"%s\", \"%s\");";
-            String fieldSrc = String.format(fieldCode, methodFieldName, proxyClass.getName(), ctMethod.getName(), ctMethod.getSignature());
-            CtField ctField = CtField.make(fieldSrc, proxyClass);
+            // 添加字段, 在<clinit>中初始化: RuntimeSupport.findSuperClassMethod(proxyClass, name, signature)
+            CtField ctField = new CtField(methodType, methodFieldName, proxyClass);
+            ctField.setModifiers(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL);
             proxyClass.addField(ctField);
+            staticInit.addLdc(constPool.addClassInfo(proxyClass));
+            staticInit.addLdc(ctMethod.getName());
+            staticInit.addLdc(ctMethod.getSignature());
+            staticInit.addInvokestatic(RuntimeSupport.class.getName(), "findSuperClassMethod",
+                    "(Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;)Ljava/lang/reflect/Method;");
+            staticInit.addPutstatic(proxyClass, methodFieldName, METHOD_DESC);
+
+            addProxyMethod(proxyClass, ctMethod, invokeHandlerCode(constPool, proxyClass, methodFieldName, ctMethod));
+        }
+        staticInit.addOpcode(Opcode.RETURN);
+        CtConstructor classInitializer = proxyClass.makeClassInitializer();
+        classInitializer.getMethodInfo().setCodeAttribute(staticInit.toCodeAttribute());
+    }
 
-            String code = "return ($r) this.handler.invoke(this, %s, $args);";
-            String methodBodySrc = String.format(code, methodFieldName);
-            addProxyMethod(proxyClass, ctMethod, methodBodySrc);
+    /**
+     * return ($r) this.handler.invoke(this, _methodN, $args);
+     */
+    private static Bytecode invokeHandlerCode(ConstPool constPool, CtClass proxyClass, String methodFieldName, CtMethod method)
+            throws NotFoundException
+    {
+        CtClass[] parameterTypes = method.getParameterTypes();
+        Bytecode code = new Bytecode(constPool);
+        code.addAload(0);
+        code.addGetfield(proxyClass, "handler", HANDLER_DESC);
+        code.addAload(0);
+        code.addGetstatic(proxyClass, methodFieldName, METHOD_DESC);
+        code.addIconst(parameterTypes.length);
+        code.addAnewarray(Object.class.getName());
+        int slot = 1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            code.addOpcode(Opcode.DUP);
+            code.addIconst(i);
+            slot += code.addLoad(slot, parameterTypes[i]);
+            if (parameterTypes[i].isPrimitive()) {
+                CtPrimitiveType type = (CtPrimitiveType) parameterTypes[i];
+                code.addInvokestatic(type.getWrapperName(), "valueOf", "(" + type.getDescriptor() + ")L" + type.getWrapperName().replace('.', '/') + ";");
+            }
+            code.addOpcode(Opcode.AASTORE);
+        }
+        code.addInvokeinterface(InvocationHandler.class.getName(), "invoke",
+                "(Ljava/lang/Object;Ljava/lang/reflect/Method;[Ljava/lang/Object;)Ljava/lang/Object;", 4);
+
+        CtClass returnType = method.getReturnType();
+        if (returnType == CtClass.voidType) {
+            code.addOpcode(Opcode.POP);
+            code.addOpcode(Opcode.RETURN);
+        }
+        else if (returnType.isPrimitive()) {
+            CtPrimitiveType type = (CtPrimitiveType) returnType;
+            code.addCheckcast(type.getWrapperName());
+            code.addInvokevirtual(type.getWrapperName(), type.getGetMethodName(), type.getGetMethodDescriptor());
+            code.addOpcode(type.getReturnOp());
+        }
+        else {
+            code.addCheckcast(returnType);
+            code.addOpcode(Opcode.ARETURN);
         }
+        code.setMaxLocals(slot);
+        return code;
     }
 
     private static void installProxyHandlerInterface(ClassPool classPool, CtClass proxyClass)
@@ -199,29 +302,40 @@ public class JavassistProxy
         CtClass proxyHandler = classPool.get(Proxy.ProxyHandler.class.getName());
         proxyClass.addInterface(proxyHandler);
 
-        CtField handlerField = CtField.make("private java.lang.reflect.InvocationHandler handler;", proxyClass);
+        CtField handlerField = new CtField(classPool.get(InvocationHandler.class.getName()), "handler", proxyClass);
+        handlerField.setModifiers(Modifier.PRIVATE);
         proxyClass.addField(handlerField);
 
-        //Add Method setHandler
-        addProxyMethod(proxyClass, proxyHandler.getDeclaredMethod("setHandler"), "this.handler = $1;");
-        //Add Method getHandler
-        addProxyMethod(proxyClass, proxyHandler.getDeclaredMethod("getHandler"), "return this.handler;");
+        ConstPool constPool = proxyClass.getClassFile().getConstPool();
+        //Add Method setHandler: this.handler = $1;
+        Bytecode setHandler = new Bytecode(constPool);
+        setHandler.addAload(0);
+        setHandler.addAload(1);
+        setHandler.addPutfield(proxyClass, "handler", HANDLER_DESC);
+        setHandler.addOpcode(Opcode.RETURN);
+        setHandler.setMaxLocals(2);
+        addProxyMethod(proxyClass, proxyHandler.getDeclaredMethod("setHandler"), setHandler);
+        //Add Method getHandler: return this.handler;
+        Bytecode getHandler = new Bytecode(constPool);
+        getHandler.addAload(0);
+        getHandler.addGetfield(proxyClass, "handler", HANDLER_DESC);
+        getHandler.addOpcode(Opcode.ARETURN);
+        getHandler.setMaxLocals(1);
+        addProxyMethod(proxyClass, proxyHandler.getDeclaredMethod("getHandler"), getHandler);
     }
 
     /**
      * 添加方法
      */
-    private static void addProxyMethod(CtClass proxy, CtMethod parentMethod, String methodBody)
+    private static void addProxyMethod(CtClass proxy, CtMethod parentMethod, Bytecode code)
             throws NotFoundException, CannotCompileException
     {
         int mod = Modifier.FINAL | parentMethod.getModifiers();
-        if (Modifier.isNative(mod)) {
-            mod = mod & ~Modifier.NATIVE;
-        }
+        mod = mod & ~(Modifier.NATIVE | Modifier.ABSTRACT);
 
         CtMethod proxyMethod = new CtMethod(parentMethod.getReturnType(), parentMethod.getName(), parentMethod.getParameterTypes(), proxy);
         proxyMethod.setModifiers(mod);
-        proxyMethod.setBody(methodBody);
+        proxyMethod.getMethodInfo().setCodeAttribute(code.toCodeAttribute());
 
         //add Override
         Annotation annotation = new Annotation(Override.class.getName(), proxyMethod.getMethodInfo().getConstPool());
@@ -231,15 +345,4 @@ public class JavassistProxy
 
         proxy.addMethod(proxyMethod);
     }
-
-    /**
-     * 添加无参数构造函数
-     */
-    private static void addVoidConstructor(CtClass proxy)
-            throws CannotCompileException
-    {
-        CtConstructor ctConstructor = new CtConstructor(new CtClass[] {}, proxy);
-        ctConstructor.setBody(";");
-        proxy.addConstructor(ctConstructor);
-    }
 }
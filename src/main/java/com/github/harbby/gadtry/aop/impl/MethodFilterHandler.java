@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import com.github.harbby.gadtry.aop.model.MethodInfo;
+import com.github.harbby.gadtry.function.Function1;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * 每个Method只计算一次filter, 结果缓存在以Method为key的IdentityHashMap中.
+ * 缓存采用copy-on-write, 命中时只需要一次volatile读和一次identity查找
+ */
+class MethodFilterHandler
+        implements InvocationHandler, Serializable
+{
+    private static final long serialVersionUID = 0L;
+
+    private final InvocationHandler handler;
+    private final Object target;
+    private final Function1<MethodInfo, Boolean> filter;
+
+    private transient volatile Map<Method, Boolean> matched = new IdentityHashMap<>();
+
+    MethodFilterHandler(InvocationHandler handler, Object target, Function1<MethodInfo, Boolean> filter)
+    {
+        this.handler = requireNonNull(handler, "handler is null");
+        this.target = target;
+        this.filter = requireNonNull(filter, "filter is null");
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+    {
+        if (isMatched(method)) {
+            return handler.invoke(proxy, method, args);
+        }
+        else {
+            return method.invoke(target, args);
+        }
+    }
+
+    boolean isMatched(Method method)
+    {
+        Map<Method, Boolean> cache = this.matched;
+        if (cache == null) {
+            cache = new IdentityHashMap<>();  //反序列化后重新计算
+        }
+        Boolean value = cache.get(method);
+        if (value == null) {
+            value = filter.apply(MethodInfo.of(method));
+            Map<Method, Boolean> copy = new IdentityHashMap<>(cache);
+            copy.put(method, value);
+            this.matched = copy;
+        }
+        return value;
+    }
+}
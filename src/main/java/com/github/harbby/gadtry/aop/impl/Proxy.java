@@ -15,12 +15,32 @@
  */
 package com.github.harbby.gadtry.aop.impl;
 
+import com.github.harbby.gadtry.aop.model.MethodInfo;
+import com.github.harbby.gadtry.function.Function1;
+
 import java.lang.reflect.InvocationHandler;
 
 public interface Proxy
 {
     <T> T getProxy(ClassLoader loader, Class<?> interfaces, InvocationHandler handler);
 
+    /**
+     * 只有filter匹配的方法才会调用handler, 其余方法直接调用target.
+     * filter对每个Method只计算一次, see: {@link MethodFilterHandler}
+     *
+     * @param loader class loader
+     * @param interfaces 被代理的接口或者父类
+     * @param handler advice handler
+     * @param target 被代理的对象
+     * @param filter 需要调用handler的方法
+     * @param <T> proxy type
+     * @return proxy instance
+     */
+    default <T> T getProxy(ClassLoader loader, Class<?> interfaces, InvocationHandler handler, Object target, Function1<MethodInfo, Boolean> filter)
+    {
+        return getProxy(loader, interfaces, new MethodFilterHandler(handler, target, filter));
+    }
+
     public static interface ProxyHandler
     {
         /**
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import javassist.ClassPool;
+import javassist.LoaderClassPath;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.harbby.gadtry.base.Throwables.throwsThrowable;
+
+/**
+ * 按ClassLoader隔离的代理类缓存.
+ * 外层WeakHashMap只在锁内做get/put, 每个key对应一个FutureTask, 相同key只会生成一次.
+ * 生成完成的代理类只被弱引用, 代理类会强引用它的ClassLoader, 强引用value会导致key永远无法回收.
+ * 同一个ClassLoader共享一个ClassPool, 生成器只需在操作ClassPool时加锁
+ */
+final class ProxyClassCache
+{
+    private static final Map<ClassLoader, ClassPool> classPools = new WeakHashMap<>();
+
+    private final Map<ClassLoader, LoaderCache> loaders = new WeakHashMap<>();
+    private final AtomicInteger classId = new AtomicInteger();
+    private final String suffix;
+
+    private static class LoaderCache
+    {
+        private final ConcurrentMap<String, WeakReference<Class<?>>> classes = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, FutureTask<Class<?>>> pending = new ConcurrentHashMap<>();
+
+        private Class<?> getLoaded(String key)
+        {
+            WeakReference<Class<?>> ref = classes.get(key);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    ProxyClassCache(String suffix)
+    {
+        this.suffix = suffix;
+    }
+
+    /**
+     * 生成唯一的代理类名, 避免simpleName相同的class冲突
+     */
+    String nextClassName(String baseName)
+    {
+        return baseName + suffix + classId.getAndIncrement();
+    }
+
+    /**
+     * 每个ClassLoader共享一个ClassPool. ClassPool不是线程安全的, 使用时需要synchronized(pool)
+     */
+    static ClassPool getClassPool(ClassLoader loader)
+    {
+        synchronized (classPools) {
+            return classPools.computeIfAbsent(loader, k -> {
+                ClassPool classPool = new ClassPool(true);
+                classPool.appendClassPath(new LoaderClassPath(k));
+                return classPool;
+            });
+        }
+    }
+
+    Class<?> getOrCreate(ClassLoader loader, String key, Callable<Class<?>> creator)
+            throws Exception
+    {
+        return getOrCreateAll(loader, Collections.singletonMap(key, creator)).get(key);
+    }
+
+    /**
+     * 批量获取代理类, 所有缺失的代理类由当前线程依次生成
+     *
+     * @param loader class loader
+     * @param creators key -> 代理类生成器
+     * @return key -> proxy class
+     * @throws Exception 代理类生成失败
+     */
+    Map<String, Class<?>> getOrCreateAll(ClassLoader loader, Map<String, Callable<Class<?>>> creators)
+            throws Exception
+    {
+        LoaderCache cache;
+        synchronized (loaders) {
+            cache = loaders.computeIfAbsent(loader, k -> new LoaderCache());
+        }
+        Map<String, Object> results = new LinkedHashMap<>();
+        List<FutureTask<Class<?>>> owned = new ArrayList<>();
+        for (Map.Entry<String, Callable<Class<?>>> entry : creators.entrySet()) {
+            String key = entry.getKey();
+            Object result = cache.getLoaded(key);
+            if (result == null) {
+                FutureTask<Class<?>> task = new FutureTask<>(entry.getValue());
+                FutureTask<Class<?>> future = cache.pending.putIfAbsent(key, task);
+                if (future != null) {
+                    result = future;
+                }
+                else {
+                    //putIfAbsent前其他线程可能刚好完成生成
+                    result = cache.getLoaded(key);
+                    if (result != null) {
+                        cache.pending.remove(key, task);
+                    }
+                    else {
+                        result = task;
+                        owned.add(task);
+                    }
+                }
+            }
+            results.put(key, result);
+        }
+        //只运行自己创建的task, 不持有任何锁, 生成器自己负责ClassPool加锁
+        owned.forEach(FutureTask::run);
+
+        Map<String, Class<?>> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : results.entrySet()) {
+            String key = entry.getKey();
+            if (entry.getValue() instanceof Class) {
+                classes.put(key, (Class<?>) entry.getValue());
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            Future<Class<?>> future = (Future<Class<?>>) entry.getValue();
+            try {
+                Class<?> proxyClass = future.get();
+                cache.classes.put(key, new WeakReference<>(proxyClass));  //先发布结果再移除pending
+                classes.put(key, proxyClass);
+            }
+            catch (ExecutionException e) {
+                throw throwsThrowable(e.getCause());  //生成失败时允许重试
+            }
+            finally {
+                cache.pending.remove(key, future);
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import com.github.harbby.gadtry.aop.ProxyContext;
+import com.github.harbby.gadtry.aop.model.MethodInfo;
+
+import java.lang.reflect.Method;
+
+/**
+ * around advice的调用上下文, 每次调用创建一个.
+ * 不可变, advice返回后或者在其他线程中仍然可以调用proceed.
+ * proceed只把字段传给{@link CutModeImpl#invokeTarget}, context本身不逃逸, advice没有保存context时JIT的逃逸分析会消除这次分配
+ */
+final class ProxyContextImpl
+        implements ProxyContext
+{
+    private final Object proxy;
+    private final Method method;
+    private final Object target;
+    private final Object[] args;
+
+    ProxyContextImpl(Object proxy, Method method, Object target, Object[] args)
+    {
+        this.proxy = proxy;
+        this.method = method;
+        this.target = target;
+        this.args = args;
+    }
+
+    @Override
+    public MethodInfo getInfo()
+    {
+        return MethodInfo.of(method);  //MethodInfo按Method缓存
+    }
+
+    @Override
+    public Object proceed()
+            throws Exception
+    {
+        return proceed(args);
+    }
+
+    @Override
+    public Object proceed(Object[] args)
+            throws Exception
+    {
+        return CutModeImpl.invokeTarget(proxy, method, target, args);
+    }
+
+    @Override
+    public Object[] getArgs()
+    {
+        return args;
+    }
+}
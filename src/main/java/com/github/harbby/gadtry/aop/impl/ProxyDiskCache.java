@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import com.github.harbby.gadtry.io.IOUtils;
+import javassist.util.proxy.DefineClassHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 代理类的磁盘缓存, {@link JavassistProxy}和{@link JavassistDirectProxy}共用.
+ * key为父类及其所有父类/接口bytecode的hash, 父类未变化时下次启动直接加载缓存的class文件, 跳过javassist生成.
+ * 通过系统属性gadtry.aop.proxyCacheDir或者{@link JavassistProxy#setDiskCacheDir(File)}开启
+ */
+final class ProxyDiskCache
+{
+    static final String CACHE_DIR_PROPERTY = "gadtry.aop.proxyCacheDir";
+    /**
+     * 代理类生成逻辑变化时需要修改, 使旧的缓存失效
+     */
+    private static final String GENERATOR_VERSION = "1";
+
+    private static volatile File cacheDir = System.getProperty(CACHE_DIR_PROPERTY) == null ? null : new File(System.getProperty(CACHE_DIR_PROPERTY));
+
+    private ProxyDiskCache() {}
+
+    static File getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    static void setCacheDir(File dir)
+    {
+        cacheDir = dir;
+    }
+
+    /**
+     * @return 无法读取父类bytecode时返回null, 此时不使用磁盘缓存
+     */
+    static String cacheKey(Class<?> parent)
+    {
+        return cacheKey(parent, "");
+    }
+
+    /**
+     * @param variant 同一个父类生成不同代理类时的区分信息, 例如{@link JavassistDirectProxy}中每个方法是否被拦截
+     * @return 无法读取父类bytecode时返回null, 此时不使用磁盘缓存
+     */
+    static String cacheKey(Class<?> parent, String variant)
+    {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        collectTypes(parent, types);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(GENERATOR_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update(variant.getBytes(StandardCharsets.UTF_8));
+            for (Class<?> type : types) {
+                byte[] bytes = readClassBytes(type);
+                if (bytes == null) {
+                    return null;
+                }
+                digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update(bytes);
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException | IOException e) {
+            return null;
+        }
+    }
+
+    private static void collectTypes(Class<?> type, Set<Class<?>> types)
+    {
+        if (type == null || !types.add(type)) {
+            return;
+        }
+        collectTypes(type.getSuperclass(), types);
+        for (Class<?> anInterface : type.getInterfaces()) {
+            collectTypes(anInterface, types);
+        }
+    }
+
+    private static byte[] readClassBytes(Class<?> type)
+            throws IOException
+    {
+        String resource = type.getName().replace('.', '/') + ".class";
+        ClassLoader loader = type.getClassLoader();
+        try (InputStream in = loader == null ? ClassLoader.getSystemResourceAsStream(resource) : loader.getResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtils.copyBytes(in, out, 4096);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * @return 缓存不存在或者已损坏时返回null
+     */
+    static Class<?> load(File dir, String className, ClassLoader loader, ProtectionDomain domain)
+    {
+        File file = new File(dir, className + ".class");
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            return DefineClassHelper.toClass(className, null, loader, domain, bytes);
+        }
+        catch (Exception | ClassFormatError e) {
+            file.delete();  //损坏的缓存, 重新生成
+            return null;
+        }
+    }
+
+    static void store(File dir, String className, byte[] bytes)
+    {
+        try {
+            Files.createDirectories(dir.toPath());
+            File tmp = File.createTempFile(className, ".tmp", dir);
+            Files.write(tmp.toPath(), bytes);
+            Files.move(tmp.toPath(), new File(dir, className + ".class").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ignored) {
+            //磁盘缓存只用于加速启动, 写入失败不影响代理类的使用
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.metrics;
+
+import com.github.harbby.gadtry.aop.ProxyContext;
+import com.github.harbby.gadtry.aop.model.AsyncAdvices;
+import com.github.harbby.gadtry.aop.model.MethodInfo;
+import com.github.harbby.gadtry.function.exception.Function;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.harbby.gadtry.base.MoreObjects.checkArgument;
+import static com.github.harbby.gadtry.base.MoreObjects.toStringHelper;
+
+/**
+ * 内置的方法耗时统计, 作为around advice使用, 通过methodAnnotated或者whereMethod选择需要统计的方法:
+ * <pre>
+ * MetricsAspect metrics = new MetricsAspect();
+ * binder.bind("metrics").classes(Service.class).methodAnnotated(Timed.class).build().around(metrics);
+ * </pre>
+ * 每个方法记录调用次数, 异常次数和耗时直方图, 使用System.nanoTime计时, 记录过程不分配对象.
+ * 返回值为CompletionStage的方法在future完成时记录耗时
+ */
+public final class MetricsAspect
+        implements Function<ProxyContext, Object>
+{
+    private static final long serialVersionUID = 0L;
+
+    private final ConcurrentMap<MethodInfo, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public Object apply(ProxyContext context)
+            throws Exception
+    {
+        MethodInfo info = context.getInfo();
+        MethodMetrics methodMetrics = metrics.get(info);
+        if (methodMetrics == null) {
+            methodMetrics = metrics.computeIfAbsent(info, MethodMetrics::new);
+        }
+
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = context.proceed();
+        }
+        catch (Exception | Error e) {
+            methodMetrics.record(start, true);
+            throw e;
+        }
+        if (AsyncAdvices.isAsync(info.getReturnType(), value)) {
+            final MethodMetrics asyncMetrics = methodMetrics;
+            ((CompletionStage<?>) value).whenComplete((result, error) -> asyncMetrics.record(start, error != null));
+        }
+        else {
+            methodMetrics.record(start, false);
+        }
+        return value;
+    }
+
+    /**
+     * @return method -> snapshot, 按方法签名排序, 参数类型使用全名以区分重载方法
+     */
+    public Map<String, Snapshot> snapshot()
+    {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        for (MethodMetrics methodMetrics : metrics.values()) {
+            snapshots.put(methodMetrics.name, methodMetrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 以文本表格输出所有方法的统计, 耗时单位为微秒
+     *
+     * @param out 输出目标
+     * @throws IOException out写入失败
+     */
+    public void report(Appendable out)
+            throws IOException
+    {
+        out.append(String.format("%-60s %10s %8s %10s %10s %10s %10s %10s%n", "method", "count", "errors", "mean(us)", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+        for (Snapshot snapshot : snapshot().values()) {
+            out.append(String.format("%-60s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    snapshot.getMethod(),
+                    snapshot.getCount(),
+                    snapshot.getErrors(),
+                    snapshot.getMeanNanos() / 1000.0,
+                    snapshot.getPercentileNanos(50) / 1000.0,
+                    snapshot.getPercentileNanos(99) / 1000.0,
+                    snapshot.getPercentileNanos(99.9) / 1000.0,
+                    snapshot.getMaxNanos() / 1000.0));
+        }
+    }
+
+    private static final class MethodMetrics
+    {
+        private final String name;
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private MethodMetrics(MethodInfo info)
+        {
+            StringBuilder builder = new StringBuilder(info.getDeclaringClass().getName())
+                    .append('.').append(info.getName()).append('(');
+            Class<?>[] parameterTypes = info.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                builder.append(i > 0 ? ", " : "").append(parameterTypes[i].getTypeName());
+            }
+            this.name = builder.append(')').toString();
+        }
+
+        private void record(long start, boolean error)
+        {
+            histogram.record(System.nanoTime() - start);
+            if (error) {
+                errors.increment();
+            }
+        }
+
+        private Snapshot snapshot()
+        {
+            return new Snapshot(name, histogram.getCount(), errors.sum(), histogram.getSum(), histogram.getMax(), histogram.getBucketCounts());
+        }
+    }
+
+    /**
+     * 某一时刻单个方法的统计, 多线程记录时各项数值之间不保证严格一致
+     */
+    public static final class Snapshot
+    {
+        private final String method;
+        private final long count;
+        private final long errors;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] bucketCounts;
+
+        private Snapshot(String method, long count, long errors, long totalNanos, long maxNanos, long[] bucketCounts)
+        {
+            this.method = method;
+            this.count = count;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.bucketCounts = bucketCounts;
+        }
+
+        public String getMethod()
+        {
+            return method;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getErrors()
+        {
+            return errors;
+        }
+
+        public long getTotalNanos()
+        {
+            return totalNanos;
+        }
+
+        public long getMaxNanos()
+        {
+            return maxNanos;
+        }
+
+        public double getMeanNanos()
+        {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile 0 - 100
+         * @return 该百分位所在桶的上界, 相对误差不超过12.5%
+         */
+        public long getPercentileNanos(double percentile)
+        {
+            checkArgument(percentile >= 0 && percentile <= 100, "percentile must be in [0, 100]");
+            long total = 0;
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(LatencyHistogram.bucketUpperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("method", method)
+                    .add("count", count)
+                    .add("errors", errors)
+                    .add("meanMs", getMeanNanos() / TimeUnit.MILLISECONDS.toNanos(1))
+                    .add("p99Ms", getPercentileNanos(99) / (double) TimeUnit.MILLISECONDS.toNanos(1))
+                    .add("maxMs", maxNanos / (double) TimeUnit.MILLISECONDS.toNanos(1))
+                    .toString();
+        }
+    }
+}
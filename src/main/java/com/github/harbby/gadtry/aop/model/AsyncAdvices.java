@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.model;
+
+import com.github.harbby.gadtry.function.exception.Consumer;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 返回值为CompletionStage的方法, advice在future完成时触发, 不阻塞调用线程.
+ * Pointcut, CutModeImpl和MetricsAspect共用这里的判断和异常处理
+ */
+public final class AsyncAdvices
+{
+    private AsyncAdvices() {}
+
+    /**
+     * @param returnType 被代理方法声明的返回类型
+     * @param value 被代理方法的返回值
+     * @return true 需要在future完成时触发advice
+     */
+    public static boolean isAsync(Class<?> returnType, Object value)
+    {
+        return value instanceof CompletionStage && CompletionStage.class.isAssignableFrom(returnType);
+    }
+
+    /**
+     * 在future完成时执行advice. CompletionStage.whenComplete会吞掉action的异常,
+     * 因此advice抛出的异常交给完成future的线程的UncaughtExceptionHandler
+     *
+     * @param advice advice, null时忽略
+     * @param info method info
+     */
+    public static void applyAdvice(Consumer<MethodInfo> advice, MethodInfo info)
+    {
+        if (advice == null) {
+            return;
+        }
+        try {
+            advice.apply(info);
+        }
+        catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+}
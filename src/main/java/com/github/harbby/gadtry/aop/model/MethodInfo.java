@@ -15,17 +15,22 @@
  */
 package com.github.harbby.gadtry.aop.model;
 
-import com.github.harbby.gadtry.collection.mutable.MutableList;
-
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
 
 public interface MethodInfo
 {
     String getName();
 
+    /**
+     * @return 声明该方法的class
+     * @throws UnsupportedOperationException 实现类没有提供declaring class
+     */
+    default Class<?> getDeclaringClass()
+    {
+        throw new UnsupportedOperationException("getDeclaringClass");
+    }
+
     Class<?> getReturnType();
 
     int getModifiers();
@@ -46,87 +51,14 @@ public interface MethodInfo
 
     boolean isVarArgs();
 
+    /**
+     * 同一个Method总是返回同一个缓存的MethodInfo
+     *
+     * @param method method
+     * @return cached MethodInfo
+     */
     public static MethodInfo of(Method method)
     {
-        return new MethodInfo()
-        {
-            @Override
-            public String getName()
-            {
-                return method.getName();
-            }
-
-            @Override
-            public Class<?> getReturnType()
-            {
-                return method.getReturnType();
-            }
-
-            @Override
-            public int getModifiers()
-            {
-                return method.getModifiers();
-            }
-
-            @Override
-            public <T extends Annotation> T getAnnotation(Class<T> annotationClass)
-            {
-                return method.getAnnotation(annotationClass);
-            }
-
-            @Override
-            public Annotation[] getAnnotations()
-            {
-                return method.getAnnotations();
-            }
-
-            @Override
-            public Class<?>[] getParameterTypes()
-            {
-                return method.getParameterTypes();
-            }
-
-            @Override
-            public int getParameterCount()
-            {
-                return method.getParameterCount();
-            }
-
-            @Override
-            public Class<?>[] getExceptionTypes()
-            {
-                return method.getExceptionTypes();
-            }
-
-            @Override
-            public boolean isDefault()
-            {
-                return method.isDefault();
-            }
-
-            @Override
-            public Annotation[][] getParameterAnnotations()
-            {
-                return method.getParameterAnnotations();
-            }
-
-            @Override
-            public boolean isVarArgs()
-            {
-                return method.isVarArgs();
-            }
-
-            @Override
-            public String toString()
-            {
-                Map<String, Object> helper = new HashMap<>();
-                helper.put("name", getName());
-                helper.put("returnType", getReturnType());
-                helper.put("modifiers", getModifiers());
-                helper.put("Annotations", MutableList.<Annotation>of(method.getAnnotations()));
-                helper.put("method", method);
-                return super.toString() + helper.toString();
-            }
-        };
+        return MethodInfoImpl.of(method);
     }
 }
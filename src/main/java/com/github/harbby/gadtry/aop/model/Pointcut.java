@@ -22,6 +22,7 @@ import com.github.harbby.gadtry.function.exception.Function;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 import static com.github.harbby.gadtry.base.Throwables.throwsThrowable;
 
@@ -118,10 +119,17 @@ public class Pointcut
         return around;
     }
 
+    /**
+     * 返回值为CompletionStage的方法, after/afterReturning/afterThrowing在future完成时触发, 不阻塞调用线程.
+     * 异步触发的advice抛出的异常交给完成future的线程的UncaughtExceptionHandler
+     *
+     * @return run handler
+     */
     public Function<ProxyContext, Object> buildRunHandler()
     {
         return (proxyContext) -> {
             Object value = null;
+            boolean async = false;
 
             if (this.getBefore() != null) {
                 this.getBefore().apply(proxyContext.getInfo());
@@ -130,11 +138,18 @@ public class Pointcut
             try {
                 value = this.getAround().apply(proxyContext);
 
+                if (AsyncAdvices.isAsync(proxyContext.getInfo().getReturnType(), value)) {
+                    async = true;
+                    whenComplete((CompletionStage<?>) value, proxyContext.getInfo());
+                    return value;
+                }
+
                 if (this.getAfterReturning() != null) {
                     this.getAfterReturning().apply(proxyContext.getInfo());
                 }
             }
-            catch (Exception e) {
+            catch (Throwable e) {
+                //directProxy的proceed直接抛出target的原始异常, 包括Error
                 if (this.getAfterThrowing() != null) {
                     this.getAfterThrowing().apply(proxyContext.getInfo());
                 }
@@ -142,11 +157,11 @@ public class Pointcut
                     throw throwsThrowable(((InvocationTargetException) e).getTargetException());
                 }
                 else {
-                    throw e;
+                    throw throwsThrowable(e);
                 }
             }
             finally {
-                if (this.getAfter() != null) {
+                if (!async && this.getAfter() != null) {
                     this.getAfter().apply(proxyContext.getInfo());
                 }
             }
@@ -154,4 +169,18 @@ public class Pointcut
             return value;
         };
     }
+
+    private void whenComplete(CompletionStage<?> stage, MethodInfo info)
+    {
+        Consumer<MethodInfo> afterReturning = this.getAfterReturning();
+        Consumer<MethodInfo> afterThrowing = this.getAfterThrowing();
+        Consumer<MethodInfo> after = this.getAfter();
+        if (afterReturning == null && afterThrowing == null && after == null) {
+            return;
+        }
+        stage.whenComplete((result, error) -> {
+            AsyncAdvices.applyAdvice(error == null ? afterReturning : afterThrowing, info);
+            AsyncAdvices.applyAdvice(after, info);  //afterReturning或afterThrowing失败时after仍然执行
+        });
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.v1;
+
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.annotation.Annotation;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 直接读取class文件判断class是否可能含有带指定注解的public方法, 不需要加载class.
+ * 会沿父类和接口的class文件继续查找, 任何class文件无法读取时保守地返回true.
+ * 结果按className缓存, 每次扫描使用一个新的实例
+ */
+final class ClassFileMatcher
+{
+    private final Set<String> annotationNames;
+    private final Map<String, Boolean> cache = new HashMap<>();
+
+    ClassFileMatcher(Set<String> annotationNames)
+    {
+        this.annotationNames = annotationNames;
+    }
+
+    /**
+     * @param classLoader 扫描使用的ClassLoader
+     * @param classFile class文件的资源路径, 例如: com/github/harbby/Test.class
+     * @return false 表示该class一定没有匹配的public方法
+     */
+    boolean mayHaveAnnotatedMethod(ClassLoader classLoader, String classFile)
+    {
+        String className = classFile.substring(0, classFile.length() - 6).replace('/', '.');
+        return mayHaveAnnotatedMethod(classLoader, className, 0);
+    }
+
+    private boolean mayHaveAnnotatedMethod(ClassLoader classLoader, String className, int depth)
+    {
+        Boolean value = cache.get(className);
+        if (value != null) {
+            return value;
+        }
+        ClassFile classFile = readClassFile(classLoader, className);
+        if (classFile == null || depth > 64) {
+            value = true;
+        }
+        else {
+            value = hasAnnotatedMethod(classFile)
+                    || (classFile.getSuperclass() != null && !className.equals(classFile.getSuperclass()) && mayHaveAnnotatedMethod(classLoader, classFile.getSuperclass(), depth + 1));
+            for (String anInterface : classFile.getInterfaces()) {
+                value = value || mayHaveAnnotatedMethod(classLoader, anInterface, depth + 1);
+            }
+        }
+        cache.put(className, value);
+        return value;
+    }
+
+    private boolean hasAnnotatedMethod(ClassFile classFile)
+    {
+        for (MethodInfo method : classFile.getMethods()) {
+            if ((method.getAccessFlags() & AccessFlag.PUBLIC) == 0) {
+                continue;
+            }
+            AnnotationsAttribute attribute = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.visibleTag);
+            if (attribute == null) {
+                continue;
+            }
+            for (Annotation annotation : attribute.getAnnotations()) {
+                if (annotationNames.contains(annotation.getTypeName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ClassFile readClassFile(ClassLoader classLoader, String className)
+    {
+        String resource = className.replace('.', '/') + ".class";
+        try (InputStream in = classLoader.getResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            return new ClassFile(new DataInputStream(in));
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
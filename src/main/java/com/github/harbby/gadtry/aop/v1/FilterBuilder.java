@@ -28,12 +28,15 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 
 public class FilterBuilder
         implements MethodFilter<FilterBuilder>, ClassFilter<FilterBuilder>
 {
+    private static final int PARALLEL_THRESHOLD = 64;
+
     private final Pointcut pointcut;
     private Set<Class<?>> inputClass = new HashSet<>();
     //class filter
@@ -45,6 +48,7 @@ public class FilterBuilder
     private Class<? extends Annotation>[] methodAnnotations = new Class[0];
     private Class<?>[] returnTypes = new Class[0];
     private Function1<MethodInfo, Boolean> whereMethod;
+    private boolean parallel;
 
     public FilterBuilder(Pointcut pointcut)
     {
@@ -115,26 +119,40 @@ public class FilterBuilder
         return this;
     }
 
+    /**
+     * 扫描到的class较多时在ForkJoinPool.commonPool()中并行过滤, 开启后whereMethod和whereClass必须是线程安全的
+     *
+     * @return FilterBuilder
+     */
+    public FilterBuilder parallel()
+    {
+        this.parallel = true;
+        return this;
+    }
+
     public Binder.PointBuilder build()
     {
         Set<Class<?>> scanClass = new HashSet<>();
         if (packageName != null) {
-            ClassScanner scanner = ClassScanner.builder(packageName)
+            ClassScanner.Builder builder = ClassScanner.builder(packageName)
                     .annotated(classAnnotations)
                     .subclassOf(subclasses)
-                    .filter(whereClass)
-                    .scan();
-            scanClass.addAll(scanner.getClasses());
+                    .filter(whereClass);
+            if (methodAnnotations.length > 0) {
+                //按方法注解过滤时, 先读取class文件排除没有注解方法的class, 这些class不会被加载
+                Set<String> annotationNames = Arrays.stream(methodAnnotations).map(Class::getName).collect(Collectors.toSet());
+                builder.classFileFilter(new ClassFileMatcher(annotationNames)::mayHaveAnnotatedMethod);
+            }
+            scanClass.addAll(builder.scan().getClasses());
         }
         scanClass.addAll(inputClass);
 
         Function1<MethodInfo, Boolean> methodFilter = MethodFilter.buildMethodFilter(methodAnnotations, returnTypes, whereMethod);
 
-        //---class filter
-        Set<Class<?>> searchClass = scanClass.stream().filter(
-                aClass -> !Arrays.stream(aClass.getMethods())
-                        .map(method -> !(methodFilter.apply(MethodInfo.of(method))))
-                        .reduce((x, y) -> x && y).orElse(false)
+        //---class filter, 找到第一个匹配的方法即停止
+        Stream<Class<?>> classStream = parallel && scanClass.size() > PARALLEL_THRESHOLD ? scanClass.parallelStream() : scanClass.stream();
+        Set<Class<?>> searchClass = classStream.filter(
+                aClass -> Arrays.stream(aClass.getMethods()).anyMatch(method -> methodFilter.apply(MethodInfo.of(method)))
         ).collect(Collectors.toSet());
 
         pointcut.setLocation(methodFilter);
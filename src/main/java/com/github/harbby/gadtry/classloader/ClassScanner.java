@@ -29,6 +29,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -91,6 +92,7 @@ public class ClassScanner
         private BiConsumer<String, Throwable> errorHandler = (classString, error) -> throwsThrowable(error);
 
         private Function<Class<?>, Boolean> classFilter;
+        private BiFunction<ClassLoader, String, Boolean> classFileFilter = (loader, classFile) -> true;
 
         public Builder(String basePackage)
         {
@@ -122,6 +124,18 @@ public class ClassScanner
             return this;
         }
 
+        /**
+         * 在加载class之前根据class文件过滤, 被过滤掉的class不会被加载
+         *
+         * @param classFileFilter (扫描使用的ClassLoader, class文件的资源路径 例如: com/github/harbby/Test.class)
+         * @return Builder
+         */
+        public Builder classFileFilter(BiFunction<ClassLoader, String, Boolean> classFileFilter)
+        {
+            this.classFileFilter = requireNonNull(classFileFilter);
+            return this;
+        }
+
         public Builder loadError(BiConsumer<String, Throwable> errorHandler)
         {
             this.errorHandler = requireNonNull(errorHandler);
@@ -135,7 +149,7 @@ public class ClassScanner
                 if (classLoader == null) {
                     classLoader = sun.misc.VM.latestUserDefinedLoader();
                 }
-                classSet = scanClasses(basePackage, classLoader, errorHandler);
+                classSet = scanClasses(basePackage, classLoader, errorHandler, classFileFilter);
             }
             catch (IOException e) {
                 throw new InjectorException(e);
@@ -172,11 +186,21 @@ public class ClassScanner
 
     public static Set<Class<?>> scanClasses(String basePackage, ClassLoader classLoader, BiConsumer<String, Throwable> loadErrorHandler)
             throws IOException
+    {
+        return scanClasses(basePackage, classLoader, loadErrorHandler, (loader, classFile) -> true);
+    }
+
+    private static Set<Class<?>> scanClasses(String basePackage, ClassLoader classLoader, BiConsumer<String, Throwable> loadErrorHandler,
+            BiFunction<ClassLoader, String, Boolean> classFileFilter)
+            throws IOException
     {
         Set<String> classStrings = scanClassNames(basePackage, classLoader);
 
         MutableSet.Builder<Class<?>> classes = MutableSet.builder();
         for (String it : classStrings) {
+            if (!classFileFilter.apply(classLoader, it)) {
+                continue;
+            }
             String classString = it.substring(0, it.length() - 6).replace("/", ".");
 
             try {
@@ -17,8 +17,10 @@ package com.github.harbby.gadtry.graph;
 
 import com.github.harbby.gadtry.graph.impl.DefaultGraph;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -44,6 +46,47 @@ public interface Graph<E, R>
      */
     Iterable<String> printShow(String id);
 
+    /**
+     * 流式打印graph结构(非递归), 适用于很深或很宽的graph
+     *
+     * @param out 输出目标
+     * @param maxDepth 最大打印深度
+     * @param maxWidth 每个节点最多打印的子节点数
+     * @throws IOException out写入失败
+     */
+    void printShow(Appendable out, int maxDepth, int maxWidth)
+            throws IOException;
+
+    /**
+     * 流式打印graph结构(非递归), 适用于很深或很宽的graph
+     *
+     * @param out 输出目标
+     * @param id 已指定id为起点
+     * @param maxDepth 最大打印深度
+     * @param maxWidth 每个节点最多打印的子节点数
+     * @throws IOException out写入失败
+     */
+    void printShow(Appendable out, String id, int maxDepth, int maxWidth)
+            throws IOException;
+
+    /**
+     * 导出为Graphviz DOT格式
+     *
+     * @param out 输出目标
+     * @throws IOException out写入失败
+     */
+    void printDot(Appendable out)
+            throws IOException;
+
+    /**
+     * 导出为GraphML格式
+     *
+     * @param out 输出目标
+     * @throws IOException out写入失败
+     */
+    void printGraphML(Appendable out)
+            throws IOException;
+
     /**
      * 搜索出in到out符合规则的所有路径
      *
@@ -61,6 +104,16 @@ public interface Graph<E, R>
 
     public List<Node<E, R>> findNode(Function<Node<E, R>, Boolean> rule);
 
+    /**
+     * 通过创建graph时声明的二级索引查找节点, 无需扫描全部节点
+     * see: {@link GraphBuilder#addIndex(String, Function)}
+     *
+     * @param indexName 索引名称
+     * @param key 索引key
+     * @return 索引key相等的所有节点
+     */
+    public List<Node<E, R>> findNode(String indexName, Object key);
+
     public SearchBuilder<E, R> search();
 
     List<Route<E, R>> searchRuleRoute(String in, Function<Route<E, R>, Boolean> rule);
@@ -71,6 +124,20 @@ public interface Graph<E, R>
 
     public Node<E, R> getNode(String id);
 
+    /**
+     * @param index see: {@link Node#getIndex()}
+     * @return node
+     * @throws IndexOutOfBoundsException index超出[0, getNodeCount())
+     */
+    public Node<E, R> getNode(int index);
+
+    public int getNodeCount();
+
+    /**
+     * @return true 已建立入边索引, 可以使用{@link Node#prevNodes()}和反向搜索
+     */
+    public boolean hasInEdgeIndex();
+
     static <E, R> GraphBuilder<E, R> builder()
     {
         return new GraphBuilder<>();
@@ -79,8 +146,10 @@ public interface Graph<E, R>
     public static class GraphBuilder<E, R>
     {
         private final Map<String, Node.Builder<E, R>> rootNodes = new HashMap<>();
-        private final Map<String, Node.Builder<E, R>> nodes = new HashMap<>();
+        private final Map<String, Node.Builder<E, R>> nodes = new LinkedHashMap<>();
+        private final Map<String, Function<E, ?>> indexes = new LinkedHashMap<>();
         private String name;
+        private boolean inEdgeIndex = false;
 
         public GraphBuilder<E, R> name(String name)
         {
@@ -88,6 +157,32 @@ public interface Graph<E, R>
             return this;
         }
 
+        /**
+         * 声明节点数据的二级索引, 创建graph时建立, 之后可以通过{@link Graph#findNode(String, Object)}查找
+         *
+         * @param indexName 索引名称
+         * @param keyFunction 从节点数据中提取索引key, 返回null的节点不进入索引
+         * @return GraphBuilder
+         */
+        public GraphBuilder<E, R> addIndex(String indexName, Function<E, ?> keyFunction)
+        {
+            checkState(isNotBlank(indexName), "indexName is null or empty");
+            requireNonNull(keyFunction, "keyFunction is null");
+            indexes.put(indexName, keyFunction);
+            return this;
+        }
+
+        /**
+         * 创建graph时为每个节点建立入边索引, 启用{@link Node#prevNodes()}和{@link SearchBuilder.Direction#BACKWARD}搜索
+         *
+         * @return GraphBuilder
+         */
+        public GraphBuilder<E, R> withInEdgeIndex()
+        {
+            this.inEdgeIndex = true;
+            return this;
+        }
+
         public GraphBuilder<E, R> addNode(String nodeId)
         {
             return addNode(nodeId, null);
@@ -122,15 +217,8 @@ public interface Graph<E, R>
 
         public Graph<E, R> create()
         {
-            final Node.Builder<E, R> root = Node.builder("/", null);
-            for (Node.Builder<E, R> node : rootNodes.values()) {
-                Edge<E, R> edge = createEdge(root.build(), node.build(), null);
-                root.addNextNode(edge);
-            }
-
-            Map<String, Node<E, R>> nodeMap = nodes.entrySet().stream()
-                    .collect(Collectors.toMap(Map.Entry::getKey, v -> v.getValue().build()));
-            return new DefaultGraph<>(name, root.build(), nodeMap);
+            List<Node<E, R>> nodeList = nodes.values().stream().map(Node.Builder::build).collect(Collectors.toList());
+            return DefaultGraph.of(name, nodeList, rootNodes.keySet(), indexes, inEdgeIndex);
         }
     }
 }
@@ -30,6 +30,17 @@ public interface Node<NodeData, EdgeData>
 
     public abstract NodeData getData();
 
+    /**
+     * Dense int id assigned when the graph is created, in {@code [0, graph.getNodeCount())}.
+     * see: {@link Graph#getNode(int)}
+     *
+     * @return node index, -1 if this node does not belong to a created graph
+     */
+    public default int getIndex()
+    {
+        return -1;
+    }
+
     /**
      * Get all child nodes of the current node
      *
@@ -39,6 +50,18 @@ public interface Node<NodeData, EdgeData>
 
     public Optional<Edge<NodeData, EdgeData>> getNextNode(String id);
 
+    /**
+     * Get all in-edges of the current node, {@link Edge#getOutNode()} of each edge is this node.
+     * Only available when the graph was created with {@link Graph.GraphBuilder#withInEdgeIndex()}
+     *
+     * @return in-edges
+     * @throws UnsupportedOperationException in-edge index is not enabled
+     */
+    public default Collection<Edge<NodeData, EdgeData>> prevNodes()
+    {
+        throw new UnsupportedOperationException("in-edge index is not enabled, see: GraphBuilder.withInEdgeIndex()");
+    }
+
     @Override
     public abstract String toString();
 
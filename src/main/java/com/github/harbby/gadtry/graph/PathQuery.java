@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.github.harbby.gadtry.base.MoreObjects.checkArgument;
+import static com.github.harbby.gadtry.base.MoreObjects.checkState;
+import static com.github.harbby.gadtry.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * 声明式路径查询, 由node条件和edge条件交替组成, edge条件可以指定跳数范围.
+ * 查询基于{@link SearchBuilder}执行, 所有条件在扩展每一条边时就地检查, 不满足的前缀立即剪枝.
+ * 当graph建立了入边索引并且终点条件比起点条件的候选节点更少时, 从终点沿入边反向搜索.
+ * 结果路径中不会出现重复节点, 并且总是按照正向(起点到终点)返回
+ * <pre>
+ * List&lt;Route&lt;E, R&gt;&gt; routes = PathQuery.&lt;E, R&gt;builder()
+ *         .node(node -&gt; node.getData().isUser())
+ *         .edge(edge -&gt; "follow".equals(edge.getData()), 1, 3)
+ *         .nodeId("a7")
+ *         .build()
+ *         .execute(graph);
+ * </pre>
+ */
+public class PathQuery<E, R>
+{
+    private final List<NodeStep<E, R>> nodeSteps;
+    private final List<EdgeStep<E, R>> edgeSteps;
+    private final int maxRoutes;
+    private final int maxDepth;
+
+    private PathQuery(List<NodeStep<E, R>> nodeSteps, List<EdgeStep<E, R>> edgeSteps, int maxRoutes)
+    {
+        this.nodeSteps = nodeSteps;
+        this.edgeSteps = edgeSteps;
+        this.maxRoutes = maxRoutes;
+        long depth = 0;
+        for (EdgeStep<E, R> step : edgeSteps) {
+            depth += step.maxHops;
+        }
+        this.maxDepth = (int) Math.min(depth, Integer.MAX_VALUE);
+    }
+
+    public static <E, R> Builder<E, R> builder()
+    {
+        return new Builder<>();
+    }
+
+    /**
+     * 只生成执行计划, 不执行查询
+     *
+     * @param graph graph
+     * @return 执行计划
+     */
+    public Plan explain(Graph<E, R> graph)
+    {
+        return new Execution(graph).plan;
+    }
+
+    public List<Route<E, R>> execute(Graph<E, R> graph)
+    {
+        Execution execution = new Execution(graph);
+        for (Node<E, R> begin : execution.startNodes) {
+            if (execution.results.size() >= maxRoutes) {
+                break;
+            }
+            SearchBuilder<E, R> search = new SearchBuilder<>(graph, begin)
+                    .optimizer(SearchBuilder.Optimizer.DEPTH_FIRST)
+                    .direction(execution.plan.direction)
+                    .expandRule(execution::nextRule)
+                    .globalRule(context -> execution.results.size() < maxRoutes);
+            if (maxDepth < Integer.MAX_VALUE) {
+                search.maxDepth(maxDepth);
+            }
+            search.search();
+        }
+        return execution.results;
+    }
+
+    /**
+     * 一次查询执行的状态, node和edge条件的结果按对象缓存, 每个用户条件对同一个node/edge只调用一次.
+     * 反向执行时按照相反的顺序使用node和edge条件
+     */
+    private class Execution
+    {
+        private final long[] initialStates = new long[] {0L};
+        private final List<Route<E, R>> results = new ArrayList<>();
+        //等待扩展的route的NFA状态, DEPTH_FIRST下一个route的子route连续扩展, 切换parent时即可释放
+        private final Map<Route<E, R>, long[]> routeStates = new IdentityHashMap<>();
+        private Route<E, R> parent;
+        private long[] parentStates;
+        private long[] buffer = new long[8];
+        private final List<Map<Node<E, R>, Boolean>> nodeCache = new ArrayList<>();
+        private final List<Map<Edge<E, R>, Boolean>> edgeCache = new ArrayList<>();
+        private final List<Set<Node<E, R>>> candidates = new ArrayList<>();
+        private final List<Node<E, R>> startNodes;
+        private final boolean backward;
+        private final Plan plan;
+
+        private Execution(Graph<E, R> graph)
+        {
+            for (int i = 0; i < nodeSteps.size(); i++) {
+                nodeCache.add(new IdentityHashMap<>());
+                candidates.add(nodeSteps.get(i).isIndexed() ? toSet(nodeSteps.get(i).findCandidates(graph)) : null);
+            }
+            for (int i = 0; i < edgeSteps.size(); i++) {
+                edgeCache.add(new IdentityHashMap<>());
+            }
+            //起点和终点必须知道候选集合大小才能比较选择性
+            int last = nodeSteps.size() - 1;
+            List<Node<E, R>> first = nodeSteps.get(0).findCandidates(graph);
+            List<Node<E, R>> end = nodeSteps.get(last).findCandidates(graph);
+            candidates.set(0, toSet(first));
+            candidates.set(last, toSet(end));
+
+            this.backward = graph.hasInEdgeIndex() && end.size() < first.size();
+            this.startNodes = backward ? end : first;
+            this.plan = new Plan(backward ? SearchBuilder.Direction.BACKWARD : SearchBuilder.Direction.FORWARD, first.size(), end.size());
+        }
+
+        /**
+         * @param step 搜索顺序中的edge条件下标
+         * @return 定义顺序中的edge条件下标
+         */
+        private int edgeStep(int step)
+        {
+            return backward ? edgeSteps.size() - 1 - step : step;
+        }
+
+        /**
+         * @param step 搜索顺序中的node条件下标
+         * @return 定义顺序中的node条件下标
+         */
+        private int nodeStep(int step)
+        {
+            return backward ? nodeSteps.size() - 1 - step : step;
+        }
+
+        private boolean nodeMatches(int step, Node<E, R> node)
+        {
+            int index = nodeStep(step);
+            Set<Node<E, R>> nodes = candidates.get(index);
+            if (nodes != null) {
+                return nodes.contains(node);
+            }
+            return nodeCache.get(index).computeIfAbsent(node, nodeSteps.get(index).predicate::apply);
+        }
+
+        private boolean edgeMatches(int step, Edge<E, R> edge)
+        {
+            int index = edgeStep(step);
+            Function<Edge<E, R>, Boolean> predicate = edgeSteps.get(index).predicate;
+            return predicate == null || edgeCache.get(index).computeIfAbsent(original(edge), predicate::apply);
+        }
+
+        private Edge<E, R> original(Edge<E, R> edge)
+        {
+            return backward ? ((ReversedEdge<E, R>) edge).getOriginal() : edge;
+        }
+
+        /**
+         * 以NFA的方式匹配route, 状态为(edge条件下标, 当前edge条件已经走过的跳数).
+         * 每个route的状态集合由parent的状态集合只经过最后一条边推进得到
+         *
+         * @return true 该route还可能扩展出匹配的路径
+         */
+        private Boolean nextRule(Route<E, R> parent, Route<E, R> route)
+        {
+            if (route.findDeadLoop()) {
+                return false;
+            }
+            if (parent != this.parent) {
+                this.parent = parent;
+                this.parentStates = parent.size() == 0 ? initialStates : routeStates.remove(parent);
+            }
+            Edge<E, R> edge = route.getLastEdge();
+            int size = 0;
+            boolean accept = false;
+            for (long state : parentStates) {
+                int step = (int) (state >>> 32);
+                int hops = (int) state;
+                EdgeStep<E, R> edgeStep = edgeSteps.get(edgeStep(step));
+                if (hops >= edgeStep.maxHops || !edgeMatches(step, edge)) {
+                    continue;
+                }
+                hops++;
+                if (hops < edgeStep.maxHops) {
+                    size = addState(size, ((long) step << 32) | hops);
+                }
+                if (hops >= edgeStep.minHops && nodeMatches(step + 1, edge.getOutNode())) {
+                    if (step + 1 == edgeSteps.size()) {
+                        accept = true;
+                    }
+                    else {
+                        size = addState(size, (long) (step + 1) << 32);
+                    }
+                }
+            }
+            if (accept) {
+                results.add(backward ? toForward(route) : route);
+            }
+            if (size == 0 || route.size() >= maxDepth) {
+                return false;
+            }
+            routeStates.put(route, Arrays.copyOf(buffer, size));
+            return true;
+        }
+
+        private int addState(int size, long state)
+        {
+            for (int i = 0; i < size; i++) {
+                if (buffer[i] == state) {
+                    return size;
+                }
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size] = state;
+            return size + 1;
+        }
+
+        private Route<E, R> toForward(Route<E, R> route)
+        {
+            Route.Builder<E, R> builder = Route.builder(route.getLastNode());
+            Iterator<Edge<E, R>> iterator = route.getEdges().descendingIterator();
+            while (iterator.hasNext()) {
+                builder.add(original(iterator.next()));
+            }
+            return builder.create();
+        }
+    }
+
+    private static <E, R> Set<Node<E, R>> toSet(List<Node<E, R>> nodes)
+    {
+        Set<Node<E, R>> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(nodes);
+        return set;
+    }
+
+    /**
+     * 查询计划, 记录搜索方向和起点/终点候选节点数
+     */
+    public static class Plan
+    {
+        private final SearchBuilder.Direction direction;
+        private final int startCandidates;
+        private final int endCandidates;
+
+        private Plan(SearchBuilder.Direction direction, int startCandidates, int endCandidates)
+        {
+            this.direction = direction;
+            this.startCandidates = startCandidates;
+            this.endCandidates = endCandidates;
+        }
+
+        public SearchBuilder.Direction getDirection()
+        {
+            return direction;
+        }
+
+        public int getStartCandidates()
+        {
+            return startCandidates;
+        }
+
+        public int getEndCandidates()
+        {
+            return endCandidates;
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("direction", direction)
+                    .add("startCandidates", startCandidates)
+                    .add("endCandidates", endCandidates)
+                    .toString();
+        }
+    }
+
+    private static class NodeStep<E, R>
+    {
+        private final Function<Node<E, R>, Boolean> predicate;
+        private final String nodeId;
+        private final String indexName;
+        private final Object indexKey;
+
+        private NodeStep(Function<Node<E, R>, Boolean> predicate, String nodeId, String indexName, Object indexKey)
+        {
+            this.predicate = predicate;
+            this.nodeId = nodeId;
+            this.indexName = indexName;
+            this.indexKey = indexKey;
+        }
+
+        /**
+         * @return true 可以不扫描全图直接得到候选节点
+         */
+        private boolean isIndexed()
+        {
+            return predicate == null;
+        }
+
+        private List<Node<E, R>> findCandidates(Graph<E, R> graph)
+        {
+            if (nodeId != null) {
+                return Collections.singletonList(graph.getNode(nodeId));
+            }
+            else if (indexName != null) {
+                return graph.findNode(indexName, indexKey);
+            }
+            else {
+                return graph.findNode(predicate);
+            }
+        }
+    }
+
+    private static class EdgeStep<E, R>
+    {
+        private final Function<Edge<E, R>, Boolean> predicate;
+        private final int minHops;
+        private final int maxHops;
+
+        private EdgeStep(Function<Edge<E, R>, Boolean> predicate, int minHops, int maxHops)
+        {
+            this.predicate = predicate;
+            this.minHops = minHops;
+            this.maxHops = maxHops;
+        }
+    }
+
+    public static class Builder<E, R>
+    {
+        private final List<NodeStep<E, R>> nodeSteps = new ArrayList<>();
+        private final List<EdgeStep<E, R>> edgeSteps = new ArrayList<>();
+        private int maxRoutes = Integer.MAX_VALUE;
+
+        public Builder<E, R> node(Function<Node<E, R>, Boolean> predicate)
+        {
+            return addNode(new NodeStep<>(requireNonNull(predicate, "predicate is null"), null, null, null));
+        }
+
+        public Builder<E, R> nodeId(String nodeId)
+        {
+            return addNode(new NodeStep<>(null, requireNonNull(nodeId, "nodeId is null"), null, null));
+        }
+
+        /**
+         * 通过graph的二级索引匹配node, see: {@link Graph#findNode(String, Object)}
+         *
+         * @param indexName 索引名称
+         * @param key 索引key
+         * @return Builder
+         */
+        public Builder<E, R> node(String indexName, Object key)
+        {
+            return addNode(new NodeStep<>(null, null, requireNonNull(indexName, "indexName is null"), key));
+        }
+
+        public Builder<E, R> edge(Function<Edge<E, R>, Boolean> predicate)
+        {
+            return edge(requireNonNull(predicate, "predicate is null"), 1, 1);
+        }
+
+        /**
+         * 任意边, 跳数在[minHops, maxHops]之间
+         */
+        public Builder<E, R> edge(int minHops, int maxHops)
+        {
+            return addEdge(new EdgeStep<>(null, minHops, maxHops));
+        }
+
+        public Builder<E, R> edge(Function<Edge<E, R>, Boolean> predicate, int minHops, int maxHops)
+        {
+            return addEdge(new EdgeStep<>(requireNonNull(predicate, "predicate is null"), minHops, maxHops));
+        }
+
+        public Builder<E, R> maxRoutes(int maxRoutes)
+        {
+            checkArgument(maxRoutes > 0, "maxRoutes must be > 0");
+            this.maxRoutes = maxRoutes;
+            return this;
+        }
+
+        public PathQuery<E, R> build()
+        {
+            checkState(!edgeSteps.isEmpty(), "path query must have at least one edge step");
+            checkState(nodeSteps.size() == edgeSteps.size() + 1, "path query must end with a node step");
+            return new PathQuery<>(new ArrayList<>(nodeSteps), new ArrayList<>(edgeSteps), maxRoutes);
+        }
+
+        private Builder<E, R> addNode(NodeStep<E, R> step)
+        {
+            checkState(nodeSteps.size() == edgeSteps.size(), "node step must follow an edge step");
+            nodeSteps.add(step);
+            return this;
+        }
+
+        private Builder<E, R> addEdge(EdgeStep<E, R> step)
+        {
+            checkArgument(step.minHops > 0 && step.maxHops >= step.minHops, "hops range must be 0 < minHops <= maxHops");
+            checkState(nodeSteps.size() == edgeSteps.size() + 1, "edge step must follow a node step");
+            edgeSteps.add(step);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph;
+
+import static com.github.harbby.gadtry.base.MoreObjects.toStringHelper;
+
+/**
+ * 反向搜索时使用的边视图, inNode和outNode与原始边相反
+ */
+class ReversedEdge<E, R>
+        implements Edge<E, R>
+{
+    private static final long serialVersionUID = 0L;
+
+    private final Edge<E, R> original;
+
+    ReversedEdge(Edge<E, R> original)
+    {
+        this.original = original;
+    }
+
+    Edge<E, R> getOriginal()
+    {
+        return original;
+    }
+
+    @Override
+    public Node<E, R> getInNode()
+    {
+        return original.getOutNode();
+    }
+
+    @Override
+    public Node<E, R> getOutNode()
+    {
+        return original.getInNode();
+    }
+
+    @Override
+    public R getData()
+    {
+        return original.getData();
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("original", original)
+                .toString();
+    }
+}
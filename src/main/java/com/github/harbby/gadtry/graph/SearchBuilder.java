@@ -17,13 +17,19 @@ package com.github.harbby.gadtry.graph;
 
 import com.github.harbby.gadtry.collection.mutable.MutableList;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static com.github.harbby.gadtry.base.MoreObjects.checkArgument;
+import static com.github.harbby.gadtry.base.MoreObjects.checkState;
 import static java.util.Objects.requireNonNull;
 
 public class SearchBuilder<E, R>
@@ -35,13 +41,28 @@ public class SearchBuilder<E, R>
         DEPTH_FIRST   //深度优先 depth_first
     }
 
+    public enum Direction
+    {
+        FORWARD,  //沿出边搜索
+        BACKWARD  //沿入边搜索, 需要graph建立入边索引
+    }
+
     private final Graph<E, R> graph;
 
     private Optimizer optimizer = Optimizer.DEPTH_FIRST;
+    private Direction direction = Direction.FORWARD;
     private Node<E, R> beginNode;
     private Node<E, R> endNode;
     private Function<Route<E, R>, Boolean> nextRule;
-    private Function<SearchContext<E, R>, Boolean> globalRule = erSearchContext -> true;
+    private BiFunction<Route<E, R>, Route<E, R>, Boolean> expandRule;  //package内部使用, 设置后代替nextRule
+    private Function<SearchContext<E, R>, Boolean> globalRule;  //null时不调用
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxRoutes = Integer.MAX_VALUE;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private long timeoutNanos = Long.MAX_VALUE;
+    private CancellationToken cancellationToken;
+    private SearchListener listener;
 
     public SearchBuilder(Graph<E, R> graph, Node<E, R> root)
     {
@@ -55,6 +76,19 @@ public class SearchBuilder<E, R>
         return this;
     }
 
+    /**
+     * 搜索方向, BACKWARD时从beginNode出发沿入边搜索, route中每条边都是原始边的反向视图,
+     * 即{@link Edge#getInNode()}为靠近beginNode的一端
+     *
+     * @param direction search direction
+     * @return SearchBuilder
+     */
+    public SearchBuilder<E, R> direction(Direction direction)
+    {
+        this.direction = requireNonNull(direction, "direction is null");
+        return this;
+    }
+
     public SearchBuilder<E, R> beginNode(String beginNodeId)
     {
         requireNonNull(beginNodeId, "beginNodeId is null");
@@ -75,34 +109,130 @@ public class SearchBuilder<E, R>
         return this;
     }
 
+    /**
+     * 同nextRule, 但同时传入被扩展的parent route, 规则可以基于parent的状态增量计算
+     *
+     * @param expandRule (parent, route) -&gt; 是否继续扩展route
+     * @return SearchBuilder
+     */
+    SearchBuilder<E, R> expandRule(BiFunction<Route<E, R>, Route<E, R>, Boolean> expandRule)
+    {
+        this.expandRule = requireNonNull(expandRule, "expandRule is null");
+        return this;
+    }
+
     public SearchBuilder<E, R> globalRule(Function<SearchContext<E, R>, Boolean> globalRule)
     {
         this.globalRule = requireNonNull(globalRule, "globalRule is null");
         return this;
     }
 
+    /**
+     * route的最大长度(边数), 达到该长度的route不再向下扩展, 但不会结束搜索
+     *
+     * @param maxDepth max route size
+     * @return SearchBuilder
+     */
+    public SearchBuilder<E, R> maxDepth(int maxDepth)
+    {
+        checkArgument(maxDepth > 0, "maxDepth must be > 0");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * 找到maxRoutes条到达endNode的route后结束搜索, 未设置endNode时计数所有被nextRule接受的route
+     *
+     * @param maxRoutes max routes
+     * @return SearchBuilder
+     */
+    public SearchBuilder<E, R> maxRoutes(int maxRoutes)
+    {
+        checkArgument(maxRoutes > 0, "maxRoutes must be > 0");
+        this.maxRoutes = maxRoutes;
+        return this;
+    }
+
+    /**
+     * 扩展(访问)maxVisitedNodes次后结束搜索, see: {@link SearchContext#getFindNodeNumber()}
+     *
+     * @param maxVisitedNodes max visited nodes
+     * @return SearchBuilder
+     */
+    public SearchBuilder<E, R> maxVisitedNodes(int maxVisitedNodes)
+    {
+        checkArgument(maxVisitedNodes > 0, "maxVisitedNodes must be > 0");
+        this.maxVisitedNodes = maxVisitedNodes;
+        return this;
+    }
+
+    public SearchBuilder<E, R> timeout(long timeout, TimeUnit unit)
+    {
+        checkArgument(timeout > 0, "timeout must be > 0");
+        this.timeoutNanos = requireNonNull(unit, "unit is null").toNanos(timeout);
+        return this;
+    }
+
+    public SearchBuilder<E, R> cancellationToken(CancellationToken cancellationToken)
+    {
+        this.cancellationToken = requireNonNull(cancellationToken, "cancellationToken is null");
+        return this;
+    }
+
+    /**
+     * 搜索结束时回调, 设置后会采集{@link SearchMetrics}. 搜索抛出异常时也会回调, 之后异常继续抛出
+     *
+     * @param listener search listener
+     * @return SearchBuilder
+     */
+    public SearchBuilder<E, R> listener(SearchListener listener)
+    {
+        this.listener = requireNonNull(listener, "listener is null");
+        return this;
+    }
+
     public SearchResult<E, R> search()
     {
-        requireNonNull(nextRule, "nextRule is null");
+        if (expandRule == null) {
+            requireNonNull(nextRule, "nextRule is null");
+        }
+        boolean backward = direction == Direction.BACKWARD;
+        checkState(!backward || graph.hasInEdgeIndex(), "BACKWARD search requires in-edge index, see: GraphBuilder.withInEdgeIndex()");
 
-        SearchContext<E, R> searchContext = new SearchContext<>(nextRule, globalRule);
+        SearchMetrics metrics = listener == null ? null : new SearchMetrics();
+        SearchContext<E, R> searchContext = new SearchContext<>(nextRule, expandRule, globalRule,
+                maxDepth, maxRoutes, maxVisitedNodes, timeoutNanos, cancellationToken, backward, metrics,
+                endNode == null ? null : endNode.getId());
         Route<E, R> begin = Route.builder(beginNode).create();
         final Deque<Route<E, R>> routes = new LinkedList<>();
 
-        switch (optimizer) {
-            case DEPTH_FIRST:
-                searchByDepthFirst(routes, searchContext, begin);
-                break;
-            case BREADTH_FIRST:
-                searchByBreadthFirst(routes, searchContext, begin);
-                break;
-            case RECURSIVE_DEPTH_FIRST:
-            default:
-                try {
-                    searchByRecursiveDepthFirst(routes, searchContext, begin);
-                }
-                catch (RecursiveExitException ignored) {
-                }
+        Throwable failure = null;
+        try {
+            switch (optimizer) {
+                case DEPTH_FIRST:
+                    searchByDepthFirst(routes, searchContext, begin);
+                    break;
+                case BREADTH_FIRST:
+                    searchByBreadthFirst(routes, searchContext, begin);
+                    break;
+                case RECURSIVE_DEPTH_FIRST:
+                default:
+                    try {
+                        searchByRecursiveDepthFirst(routes, searchContext, begin);
+                    }
+                    catch (RecursiveExitException ignored) {
+                    }
+            }
+        }
+        catch (Throwable e) {
+            failure = e;
+            throw e;
+        }
+        finally {
+            if (metrics != null) {
+                metrics.finish(failure == null ? searchContext.getStopReason() : SearchResult.StopReason.FAILED, failure);
+                listener.onFinish(metrics);
+            }
         }
 
         return new SearchResult<E, R>()
@@ -131,6 +261,12 @@ public class SearchBuilder<E, R>
             {
                 return searchContext.getFindNodeNumber();
             }
+
+            @Override
+            public StopReason getStopReason()
+            {
+                return searchContext.getStopReason();
+            }
         };
     }
 
@@ -142,14 +278,19 @@ public class SearchBuilder<E, R>
             SearchContext<E, R> context,
             Route<E, R> route)
     {
-        for (Edge<E, R> edge : route.getLastNode().nextNodes()) {   //use stream.parallel();
+        if (!context.canExpand(route)) {
+            return;
+        }
+        context.recordFrontier(route.size());  //递归深度
+        for (Edge<E, R> edge : nextEdges(context, route.getLastNode())) {   //use stream.parallel();
             Route<E, R> newRoute = route.copy().add(edge).create();
             context.setLastRoute(newRoute);
-            boolean next = context.getNextRule().apply(newRoute);
+            boolean next = context.applyNextRule(route, newRoute);
             if (next) {
                 routes.add(newRoute);
+                context.acceptRoute(newRoute);
             }
-            if (!context.getGlobalRule().apply(context)) {
+            if (context.isStop()) {
                 throw new RecursiveExitException();
             }
 
@@ -159,6 +300,19 @@ public class SearchBuilder<E, R>
         }
     }
 
+    private static <E, R> Iterable<Edge<E, R>> nextEdges(SearchContext<E, R> context, Node<E, R> node)
+    {
+        if (!context.isBackward()) {
+            return node.nextNodes();
+        }
+        Collection<Edge<E, R>> prevNodes = node.prevNodes();
+        List<Edge<E, R>> edges = new ArrayList<>(prevNodes.size());
+        for (Edge<E, R> edge : prevNodes) {
+            edges.add(new ReversedEdge<>(edge));
+        }
+        return edges;
+    }
+
     private static class RecursiveExitException
             extends RuntimeException
     {
@@ -177,16 +331,21 @@ public class SearchBuilder<E, R>
 
         Route<E, R> route;
         while ((route = nextNodes.poll()) != null) {
-            for (Edge<E, R> edge : route.getLastNode().nextNodes()) {   //use stream.parallel();
+            if (!context.canExpand(route)) {
+                continue;
+            }
+            for (Edge<E, R> edge : nextEdges(context, route.getLastNode())) {   //use stream.parallel();
                 Route<E, R> newRoute = route.copy().add(edge).create();
                 context.setLastRoute(newRoute);
 
-                if (context.getNextRule().apply(newRoute)) {
+                if (context.applyNextRule(route, newRoute)) {
                     routes.add(newRoute);
+                    context.acceptRoute(newRoute);
                     nextNodes.add(newRoute);
+                    context.recordFrontier(nextNodes.size());
                 }
 
-                if (!context.getGlobalRule().apply(context)) {
+                if (context.isStop()) {
                     nextNodes.clear();
                     return;
                 }
@@ -207,16 +366,21 @@ public class SearchBuilder<E, R>
 
         Route<E, R> route;
         while ((route = nextNodes.pollLast()) != null) {
-            for (Edge<E, R> edge : route.getLastNode().nextNodes()) {   //use stream.parallel();
+            if (!context.canExpand(route)) {
+                continue;
+            }
+            for (Edge<E, R> edge : nextEdges(context, route.getLastNode())) {   //use stream.parallel();
                 Route<E, R> newRoute = route.copy().add(edge).create();
                 context.setLastRoute(newRoute);
 
-                if (context.getNextRule().apply(newRoute)) {
+                if (context.applyNextRule(route, newRoute)) {
                     routes.add(newRoute);
+                    context.acceptRoute(newRoute);
                     nextNodes.add(newRoute);
+                    context.recordFrontier(nextNodes.size());
                 }
 
-                if (!context.getGlobalRule().apply(context)) {
+                if (context.isStop()) {
                     nextNodes.clear();
                     return;
                 }
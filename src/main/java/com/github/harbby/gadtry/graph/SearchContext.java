@@ -15,23 +15,144 @@
  */
 package com.github.harbby.gadtry.graph;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class SearchContext<N, E>
 {
-    private final Function<Route<N, E>, Boolean> nextRule;
+    private static final int CHECK_INTERVAL_MASK = 0xFF;  //每256次扩展检查一次timeout和cancel
+
+    private final Function<Route<N, E>, Boolean> nextRule;  //只设置了expandRule时为null
+    private final BiFunction<Route<N, E>, Route<N, E>, Boolean> expandRule;  //(parent, route)
     private final Function<SearchContext<N, E>, Boolean> globalRule;
     private final long searchStartTime = System.currentTimeMillis();
+    private final long searchStartNanos = System.nanoTime();
+
+    private final int maxDepth;
+    private final int maxRoutes;
+    private final int maxVisitedNodes;
+    private final long timeoutNanos;
+    private final CancellationToken cancellationToken;
+    private final boolean backward;
+    private final SearchMetrics metrics;  //null表示不采集
+    private final String endNodeId;  //null表示所有route都计入maxRoutes
 
     private Route<N, E> lastRoute;
     private int number = 0;
+    private int acceptedRoutes = 0;
+    private SearchResult.StopReason stopReason = SearchResult.StopReason.COMPLETED;
 
     public SearchContext(
             Function<Route<N, E>, Boolean> nextRule,
             Function<SearchContext<N, E>, Boolean> globalRule)
+    {
+        this(nextRule, null, globalRule, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, null, false, null, null);
+    }
+
+    SearchContext(
+            Function<Route<N, E>, Boolean> nextRule,
+            BiFunction<Route<N, E>, Route<N, E>, Boolean> expandRule,
+            Function<SearchContext<N, E>, Boolean> globalRule,
+            int maxDepth,
+            int maxRoutes,
+            int maxVisitedNodes,
+            long timeoutNanos,
+            CancellationToken cancellationToken,
+            boolean backward,
+            SearchMetrics metrics,
+            String endNodeId)
     {
         this.nextRule = nextRule;
+        this.expandRule = expandRule != null ? expandRule : (parent, route) -> nextRule.apply(route);
         this.globalRule = globalRule;
+        this.maxDepth = maxDepth;
+        this.maxRoutes = maxRoutes;
+        this.maxVisitedNodes = maxVisitedNodes;
+        this.timeoutNanos = timeoutNanos;
+        this.cancellationToken = cancellationToken;
+        this.backward = backward;
+        this.metrics = metrics;
+        this.endNodeId = endNodeId;
+    }
+
+    /**
+     * 对新扩展的route调用nextRule, 设置了listener时同时采集统计信息
+     *
+     * @param parent 被扩展的route, route为parent增加一条边
+     */
+    boolean applyNextRule(Route<N, E> parent, Route<N, E> route)
+    {
+        return metrics == null ? expandRule.apply(parent, route) : metrics.applyNextRule(expandRule, parent, route);
+    }
+
+    /**
+     * 记录被nextRule接受的route, 只有到达endNode的route(未设置endNode时为全部)计入maxRoutes
+     */
+    void acceptRoute(Route<N, E> route)
+    {
+        if (endNodeId == null || endNodeId.equals(route.getLastNodeId())) {
+            acceptedRoutes++;
+        }
+    }
+
+    void recordFrontier(int size)
+    {
+        if (metrics != null) {
+            metrics.recordFrontier(size);
+        }
+    }
+
+    /**
+     * @return true 沿入边反向搜索, route中的边为反向视图
+     */
+    boolean isBackward()
+    {
+        return backward;
+    }
+
+    /**
+     * 当前route是否还允许继续向下扩展
+     */
+    boolean canExpand(Route<N, E> route)
+    {
+        return route.size() < maxDepth;
+    }
+
+    /**
+     * 每次扩展后调用, 检查globalRule和各项搜索限制.
+     * timeout和cancel每256次扩展才检查一次, 避免在热循环中频繁读取时钟
+     *
+     * @return true 停止搜索
+     */
+    boolean isStop()
+    {
+        if (globalRule != null && !globalRule.apply(this)) {
+            stopReason = SearchResult.StopReason.GLOBAL_RULE;
+        }
+        else if (acceptedRoutes >= maxRoutes) {
+            stopReason = SearchResult.StopReason.MAX_ROUTES;
+        }
+        else if (number >= maxVisitedNodes) {
+            stopReason = SearchResult.StopReason.MAX_VISITED_NODES;
+        }
+        else if ((number & CHECK_INTERVAL_MASK) != 0) {
+            return false;
+        }
+        else if (cancellationToken != null && cancellationToken.isCancelled()) {
+            stopReason = SearchResult.StopReason.CANCELLED;
+        }
+        else if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - searchStartNanos >= timeoutNanos) {
+            stopReason = SearchResult.StopReason.TIMEOUT;
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    SearchResult.StopReason getStopReason()
+    {
+        return stopReason;
     }
 
     void setLastRoute(Route<N, E> lastRoute)
@@ -67,6 +188,6 @@ public class SearchContext<N, E>
 
     public Function<SearchContext<N, E>, Boolean> getGlobalRule()
     {
-        return globalRule;
+        return globalRule == null ? context -> true : globalRule;
     }
 }
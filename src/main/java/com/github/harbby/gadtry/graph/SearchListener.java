@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph;
+
+/**
+ * 搜索结束时回调, 用于统计每次搜索的开销. 搜索抛出异常时同样会回调, 异常见{@link SearchMetrics#getFailure()}.
+ * 只有设置了listener的搜索才会采集{@link SearchMetrics}, 未设置时搜索循环中没有额外开销
+ * see: {@link SearchBuilder#listener(SearchListener)}
+ */
+@FunctionalInterface
+public interface SearchListener
+{
+    public void onFinish(SearchMetrics metrics);
+}
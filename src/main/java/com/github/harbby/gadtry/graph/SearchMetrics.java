@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.BiFunction;
+
+import static com.github.harbby.gadtry.base.MoreObjects.toStringHelper;
+
+/**
+ * 一次搜索的统计信息, 由搜索线程写入, 搜索结束后只读
+ */
+public final class SearchMetrics
+{
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final long startNanos = System.nanoTime();
+    private final long startAllocatedBytes = currentThreadAllocatedBytes();
+
+    private long expansions;
+    private long acceptedRoutes;
+    private long rejectedRoutes;
+    private int frontierPeak;
+    private int maxDepth;
+    private long nextRuleNanos;
+
+    private long totalNanos;
+    private long allocatedBytes = -1;
+    private SearchResult.StopReason stopReason;
+    private Throwable failure;
+
+    SearchMetrics() {}
+
+    <E, R> boolean applyNextRule(BiFunction<Route<E, R>, Route<E, R>, Boolean> expandRule, Route<E, R> parent, Route<E, R> route)
+    {
+        long start = System.nanoTime();
+        boolean next = expandRule.apply(parent, route);
+        nextRuleNanos += System.nanoTime() - start;
+        expansions++;
+        if (next) {
+            acceptedRoutes++;
+        }
+        else {
+            rejectedRoutes++;
+        }
+        maxDepth = Math.max(maxDepth, route.size());
+        return next;
+    }
+
+    void recordFrontier(int size)
+    {
+        if (size > frontierPeak) {
+            frontierPeak = size;
+        }
+    }
+
+    void finish(SearchResult.StopReason stopReason, Throwable failure)
+    {
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.stopReason = stopReason;
+        this.failure = failure;
+        long endAllocatedBytes = currentThreadAllocatedBytes();
+        if (startAllocatedBytes >= 0 && endAllocatedBytes >= 0) {
+            this.allocatedBytes = endAllocatedBytes - startAllocatedBytes;
+        }
+    }
+
+    /**
+     * 当前线程已分配的内存, 需要HotSpot的com.sun.management.ThreadMXBean, 不支持时返回-1
+     */
+    private static long currentThreadAllocatedBytes()
+    {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 调用nextRule的次数
+     */
+    public long getExpansions()
+    {
+        return expansions;
+    }
+
+    public long getAcceptedRoutes()
+    {
+        return acceptedRoutes;
+    }
+
+    public long getRejectedRoutes()
+    {
+        return rejectedRoutes;
+    }
+
+    /**
+     * @return 等待扩展的route队列(或递归深度)的峰值
+     */
+    public int getFrontierPeak()
+    {
+        return frontierPeak;
+    }
+
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    public long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    /**
+     * @return 用户nextRule中消耗的时间
+     */
+    public long getNextRuleNanos()
+    {
+        return nextRuleNanos;
+    }
+
+    /**
+     * @return 搜索引擎自身(route复制, 队列, 限制检查)消耗的时间
+     */
+    public long getEngineNanos()
+    {
+        return totalNanos - nextRuleNanos;
+    }
+
+    public double getExpansionsPerSecond()
+    {
+        return totalNanos == 0 ? 0 : expansions * 1_000_000_000.0 / totalNanos;
+    }
+
+    /**
+     * @return 搜索线程分配的内存, 不支持时返回-1
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return 平均每个扩展的route分配的内存, 不支持时返回-1
+     */
+    public long getAllocatedBytesPerRoute()
+    {
+        if (allocatedBytes < 0) {
+            return -1;
+        }
+        return expansions == 0 ? 0 : allocatedBytes / expansions;
+    }
+
+    public SearchResult.StopReason getStopReason()
+    {
+        return stopReason;
+    }
+
+    /**
+     * @return 搜索中nextRule或globalRule抛出的异常, 正常结束时为null
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("expansions", expansions)
+                .add("acceptedRoutes", acceptedRoutes)
+                .add("rejectedRoutes", rejectedRoutes)
+                .add("frontierPeak", frontierPeak)
+                .add("maxDepth", maxDepth)
+                .add("totalNanos", totalNanos)
+                .add("nextRuleNanos", nextRuleNanos)
+                .add("allocatedBytes", allocatedBytes)
+                .add("stopReason", stopReason)
+                .add("failure", failure)
+                .toString();
+    }
+}
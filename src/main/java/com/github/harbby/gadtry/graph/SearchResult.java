@@ -24,4 +24,23 @@ public interface SearchResult<N, E>
     public long getSearchStartTime();
 
     public int getFindNodeNumber();
+
+    /**
+     * @return 搜索结束的原因
+     */
+    public default StopReason getStopReason()
+    {
+        return StopReason.COMPLETED;
+    }
+
+    public enum StopReason
+    {
+        COMPLETED,  //所有路径都已搜索完
+        GLOBAL_RULE,  //globalRule返回false
+        MAX_ROUTES,
+        MAX_VISITED_NODES,
+        TIMEOUT,
+        CANCELLED,
+        FAILED  //nextRule或globalRule抛出异常, 只会出现在SearchMetrics中
+    }
 }
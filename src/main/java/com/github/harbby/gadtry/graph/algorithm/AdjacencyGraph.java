@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+import com.github.harbby.gadtry.graph.Edge;
+import com.github.harbby.gadtry.graph.Graph;
+import com.github.harbby.gadtry.graph.Node;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * graph的CSR(compressed sparse row)表示, 节点和边全部保存在int数组中.
+ * 节点编号与{@link Graph#getNode(int)}一致, 所有图算法都运行在该结构上
+ */
+public final class AdjacencyGraph
+        implements Serializable
+{
+    private static final long serialVersionUID = 0L;
+
+    private final String[] ids;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inSources;
+
+    private AdjacencyGraph(String[] ids, int[] outOffsets, int[] outTargets)
+    {
+        this.ids = ids;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+
+        int nodeCount = ids.length;
+        this.inOffsets = new int[nodeCount + 1];
+        this.inSources = new int[outTargets.length];
+        for (int target : outTargets) {
+            inOffsets[target + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        int[] cursor = Arrays.copyOf(inOffsets, nodeCount);
+        for (int source = 0; source < nodeCount; source++) {
+            for (int i = outOffsets[source]; i < outOffsets[source + 1]; i++) {
+                inSources[cursor[outTargets[i]]++] = source;
+            }
+        }
+    }
+
+    public static AdjacencyGraph of(Graph<?, ?> graph)
+    {
+        requireNonNull(graph, "graph is null");
+        int nodeCount = graph.getNodeCount();
+        String[] ids = new String[nodeCount];
+        Map<String, Integer> idIndex = null;  //只有节点没有int id时才需要
+        int edgeCount = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            Node<?, ?> node = graph.getNode(i);
+            ids[i] = node.getId();
+            edgeCount += node.nextNodes().size();
+            if (node.getIndex() != i && idIndex == null) {
+                idIndex = new HashMap<>();
+                for (int j = 0; j < i; j++) {
+                    idIndex.put(ids[j], j);
+                }
+            }
+            if (idIndex != null) {
+                idIndex.put(ids[i], i);
+            }
+        }
+
+        int[] outOffsets = new int[nodeCount + 1];
+        int[] outTargets = new int[edgeCount];
+        int offset = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            outOffsets[i] = offset;
+            for (Edge<?, ?> edge : graph.getNode(i).nextNodes()) {
+                Node<?, ?> target = edge.getOutNode();
+                outTargets[offset++] = idIndex == null ? target.getIndex() : idIndex.get(target.getId());
+            }
+        }
+        outOffsets[nodeCount] = offset;
+        return new AdjacencyGraph(ids, outOffsets, outTargets);
+    }
+
+    /**
+     * @param ids 节点id, 下标即节点编号
+     * @param sources 边的起点编号
+     * @param targets 边的终点编号
+     * @return AdjacencyGraph
+     */
+    public static AdjacencyGraph of(String[] ids, int[] sources, int[] targets)
+    {
+        requireNonNull(ids, "ids is null");
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException("sources and targets must have the same length");
+        }
+        int nodeCount = ids.length;
+        int[] outOffsets = new int[nodeCount + 1];
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] < 0 || sources[i] >= nodeCount || targets[i] < 0 || targets[i] >= nodeCount) {
+                throw new IllegalArgumentException("edge " + i + " out of range");
+            }
+            outOffsets[sources[i] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+        }
+        int[] outTargets = new int[targets.length];
+        int[] cursor = Arrays.copyOf(outOffsets, nodeCount);
+        for (int i = 0; i < sources.length; i++) {
+            outTargets[cursor[sources[i]]++] = targets[i];
+        }
+        return new AdjacencyGraph(ids.clone(), outOffsets, outTargets);
+    }
+
+    /**
+     * 转为无向简单图: 每条边双向保存, 去掉自环和重复边, 邻居按编号升序排列
+     *
+     * @return undirected AdjacencyGraph
+     */
+    public AdjacencyGraph toUndirected()
+    {
+        int nodeCount = ids.length;
+        int[] degree = new int[nodeCount + 1];
+        for (int source = 0; source < nodeCount; source++) {
+            for (int i = outOffsets[source]; i < outOffsets[source + 1]; i++) {
+                int target = outTargets[i];
+                if (target != source) {
+                    degree[source + 1]++;
+                    degree[target + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            degree[i + 1] += degree[i];
+        }
+        int[] neighbors = new int[degree[nodeCount]];
+        int[] cursor = Arrays.copyOf(degree, nodeCount);
+        for (int source = 0; source < nodeCount; source++) {
+            for (int i = outOffsets[source]; i < outOffsets[source + 1]; i++) {
+                int target = outTargets[i];
+                if (target != source) {
+                    neighbors[cursor[source]++] = target;
+                    neighbors[cursor[target]++] = source;
+                }
+            }
+        }
+
+        int[] offsets = new int[nodeCount + 1];
+        int size = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int begin = degree[node];
+            int end = degree[node + 1];
+            Arrays.sort(neighbors, begin, end);
+            offsets[node] = size;
+            for (int i = begin; i < end; i++) {
+                if (i == begin || neighbors[i] != neighbors[i - 1]) {
+                    neighbors[size++] = neighbors[i];
+                }
+            }
+        }
+        offsets[nodeCount] = size;
+        return new AdjacencyGraph(ids, offsets, Arrays.copyOf(neighbors, size));
+    }
+
+    public int getNodeCount()
+    {
+        return ids.length;
+    }
+
+    public int getEdgeCount()
+    {
+        return outTargets.length;
+    }
+
+    public String getId(int node)
+    {
+        return ids[node];
+    }
+
+    public int outDegree(int node)
+    {
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+
+    public int inDegree(int node)
+    {
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+
+    /**
+     * 出边终点保存在{@link #outTargets()}的[outBegin(node), outEnd(node))区间
+     */
+    public int outBegin(int node)
+    {
+        return outOffsets[node];
+    }
+
+    public int outEnd(int node)
+    {
+        return outOffsets[node + 1];
+    }
+
+    public int inBegin(int node)
+    {
+        return inOffsets[node];
+    }
+
+    public int inEnd(int node)
+    {
+        return inOffsets[node + 1];
+    }
+
+    /**
+     * 直接返回内部数组, 调用方不能修改
+     */
+    int[] outTargets()
+    {
+        return outTargets;
+    }
+
+    int[] inSources()
+    {
+        return inSources;
+    }
+
+    public int outTarget(int edgeOffset)
+    {
+        return outTargets[edgeOffset];
+    }
+
+    public int inSource(int edgeOffset)
+    {
+        return inSources[edgeOffset];
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 连通分量, 结果为下标为节点编号的分量编号, 分量编号按节点编号首次出现的顺序从0开始连续分配
+ */
+public final class ConnectedComponents
+{
+    private ConnectedComponents() {}
+
+    public static int[] weak(AdjacencyGraph graph)
+    {
+        return weak(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 弱连通分量, 忽略边的方向.
+     * 使用无锁并查集: 总是通过CAS把编号大的根挂到编号小的根下面, 因此不会成环, 各区间可以并行union
+     *
+     * @param graph graph
+     * @param pool fork-join pool
+     * @return 分量编号
+     */
+    public static int[] weak(AdjacencyGraph graph, ForkJoinPool pool)
+    {
+        final int nodeCount = graph.getNodeCount();
+        final AtomicIntegerArray parent = new AtomicIntegerArray(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            parent.set(i, i);
+        }
+        ParallelRange.forEach(pool, nodeCount, node -> {
+            for (int i = graph.outBegin(node); i < graph.outEnd(node); i++) {
+                union(parent, node, graph.outTarget(i));
+            }
+        });
+
+        int[] roots = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            roots[i] = find(parent, i);
+        }
+        return relabel(roots);
+    }
+
+    /**
+     * 强连通分量, 非递归Tarjan算法, 深图不会栈溢出
+     *
+     * @param graph graph
+     * @return 分量编号
+     */
+    public static int[] strong(AdjacencyGraph graph)
+    {
+        final int nodeCount = graph.getNodeCount();
+        final int[] order = new int[nodeCount];    //dfs访问序号, 0表示未访问
+        final int[] lowLink = new int[nodeCount];
+        final int[] component = new int[nodeCount];
+        final boolean[] onStack = new boolean[nodeCount];
+        final int[] sccStack = new int[nodeCount];
+        final int[] callStack = new int[nodeCount];
+        final int[] edgeCursor = new int[nodeCount];
+        int sccTop = 0;
+        int counter = 0;
+        int componentCount = 0;
+
+        for (int start = 0; start < nodeCount; start++) {
+            if (order[start] != 0) {
+                continue;
+            }
+            int callTop = 0;
+            callStack[callTop++] = start;
+            order[start] = ++counter;
+            lowLink[start] = counter;
+            edgeCursor[start] = graph.outBegin(start);
+            sccStack[sccTop++] = start;
+            onStack[start] = true;
+
+            while (callTop > 0) {
+                int node = callStack[callTop - 1];
+                if (edgeCursor[node] < graph.outEnd(node)) {
+                    int next = graph.outTarget(edgeCursor[node]++);
+                    if (order[next] == 0) {
+                        order[next] = ++counter;
+                        lowLink[next] = counter;
+                        edgeCursor[next] = graph.outBegin(next);
+                        sccStack[sccTop++] = next;
+                        onStack[next] = true;
+                        callStack[callTop++] = next;
+                    }
+                    else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], order[next]);
+                    }
+                    continue;
+                }
+
+                callTop--;
+                if (lowLink[node] == order[node]) {
+                    int member;
+                    do {
+                        member = sccStack[--sccTop];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                    }
+                    while (member != node);
+                    componentCount++;
+                }
+                if (callTop > 0) {
+                    int parentNode = callStack[callTop - 1];
+                    lowLink[parentNode] = Math.min(lowLink[parentNode], lowLink[node]);
+                }
+            }
+        }
+        return relabel(component);
+    }
+
+    public static int count(int[] components)
+    {
+        int max = -1;
+        for (int component : components) {
+            max = Math.max(max, component);
+        }
+        return max + 1;
+    }
+
+    private static int find(AtomicIntegerArray parent, int node)
+    {
+        int current = node;
+        while (true) {
+            int p = parent.get(current);
+            if (p == current) {
+                return current;
+            }
+            int grandParent = parent.get(p);
+            parent.compareAndSet(current, p, grandParent);  //path halving
+            current = grandParent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray parent, int a, int b)
+    {
+        while (true) {
+            int rootA = find(parent, a);
+            int rootB = find(parent, b);
+            if (rootA == rootB) {
+                return;
+            }
+            int high = Math.max(rootA, rootB);
+            int low = Math.min(rootA, rootB);
+            if (parent.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    private static int[] relabel(int[] labels)
+    {
+        int[] mapping = new int[labels.length];
+        Arrays.fill(mapping, -1);
+        int[] result = new int[labels.length];
+        int next = 0;
+        for (int i = 0; i < labels.length; i++) {
+            int label = labels[i];
+            if (mapping[label] == -1) {
+                mapping[label] = next++;
+            }
+            result[i] = mapping[label];
+        }
+        return result;
+    }
+}
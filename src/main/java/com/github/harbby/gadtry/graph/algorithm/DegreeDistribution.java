@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+/**
+ * 出度/入度分布, histogram下标为度数, 值为该度数的节点个数
+ */
+public final class DegreeDistribution
+{
+    private final long[] outDegreeHistogram;
+    private final long[] inDegreeHistogram;
+    private final int nodeCount;
+    private final int edgeCount;
+
+    private DegreeDistribution(long[] outDegreeHistogram, long[] inDegreeHistogram, int nodeCount, int edgeCount)
+    {
+        this.outDegreeHistogram = outDegreeHistogram;
+        this.inDegreeHistogram = inDegreeHistogram;
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+    }
+
+    public static DegreeDistribution of(AdjacencyGraph graph)
+    {
+        int nodeCount = graph.getNodeCount();
+        int maxOut = 0;
+        int maxIn = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            maxOut = Math.max(maxOut, graph.outDegree(node));
+            maxIn = Math.max(maxIn, graph.inDegree(node));
+        }
+        long[] outHistogram = new long[maxOut + 1];
+        long[] inHistogram = new long[maxIn + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            outHistogram[graph.outDegree(node)]++;
+            inHistogram[graph.inDegree(node)]++;
+        }
+        return new DegreeDistribution(outHistogram, inHistogram, nodeCount, graph.getEdgeCount());
+    }
+
+    public long[] getOutDegreeHistogram()
+    {
+        return outDegreeHistogram.clone();
+    }
+
+    public long[] getInDegreeHistogram()
+    {
+        return inDegreeHistogram.clone();
+    }
+
+    public int getMaxOutDegree()
+    {
+        return nodeCount == 0 ? 0 : outDegreeHistogram.length - 1;
+    }
+
+    public int getMaxInDegree()
+    {
+        return nodeCount == 0 ? 0 : inDegreeHistogram.length - 1;
+    }
+
+    /**
+     * 平均出度(等于平均入度)
+     */
+    public double getMeanDegree()
+    {
+        return nodeCount == 0 ? 0 : (double) edgeCount / nodeCount;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.github.harbby.gadtry.base.MoreObjects.checkArgument;
+
+/**
+ * pull模式PageRank: 每个节点从入边汇总rank, 节点之间互不写冲突, 可以直接按区间并行.
+ * 没有出边的节点(dangling)的rank平均分配给所有节点
+ */
+public final class PageRank
+{
+    private PageRank() {}
+
+    public static double[] run(AdjacencyGraph graph, double damping, int maxIterations, double tolerance)
+    {
+        return run(graph, damping, maxIterations, tolerance, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param graph graph
+     * @param damping 阻尼系数, 一般为0.85
+     * @param maxIterations 最大迭代次数
+     * @param tolerance 两次迭代之间rank的L1距离小于该值时提前结束
+     * @param pool fork-join pool
+     * @return 下标为节点编号的rank, 总和为1
+     */
+    public static double[] run(AdjacencyGraph graph, double damping, int maxIterations, double tolerance, ForkJoinPool pool)
+    {
+        checkArgument(damping >= 0 && damping <= 1, "damping must be in [0, 1]");
+        checkArgument(maxIterations > 0, "maxIterations must be > 0");
+        final int nodeCount = graph.getNodeCount();
+        if (nodeCount == 0) {
+            return new double[0];
+        }
+        final int[] inSources = graph.inSources();
+        double[] rank = new double[nodeCount];
+        double[] next = new double[nodeCount];
+        final double[] contribution = new double[nodeCount];
+        Arrays.fill(rank, 1.0 / nodeCount);
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            final double[] current = rank;
+            final double[] target = next;
+            double dangling = ParallelRange.sumDouble(pool, nodeCount, node -> {
+                int outDegree = graph.outDegree(node);
+                if (outDegree == 0) {
+                    contribution[node] = 0;
+                    return current[node];
+                }
+                contribution[node] = current[node] / outDegree;
+                return 0;
+            });
+
+            final double base = (1 - damping) / nodeCount + damping * dangling / nodeCount;
+            double delta = ParallelRange.sumDouble(pool, nodeCount, node -> {
+                double sum = 0;
+                for (int i = graph.inBegin(node); i < graph.inEnd(node); i++) {
+                    sum += contribution[inSources[i]];
+                }
+                target[node] = base + damping * sum;
+                return Math.abs(target[node] - current[node]);
+            });
+
+            next = rank;
+            rank = target;
+            if (delta < tolerance) {
+                break;
+            }
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * 基于fork-join的区间并行工具, 将[0, size)按节点区间切分后并行计算并汇总
+ */
+final class ParallelRange
+{
+    private static final int THRESHOLD = 1024;
+
+    private ParallelRange() {}
+
+    static double sumDouble(ForkJoinPool pool, int size, IntToDoubleFunction function)
+    {
+        return pool.invoke(new DoubleSumTask(0, size, function));
+    }
+
+    static long sumLong(ForkJoinPool pool, int size, IntToLongFunction function)
+    {
+        return pool.invoke(new LongSumTask(0, size, function));
+    }
+
+    static void forEach(ForkJoinPool pool, int size, IntConsumer consumer)
+    {
+        sumLong(pool, size, i -> {
+            consumer.accept(i);
+            return 0;
+        });
+    }
+
+    private static class DoubleSumTask
+            extends RecursiveTask<Double>
+    {
+        private static final long serialVersionUID = 0L;
+
+        private final int begin;
+        private final int end;
+        private final IntToDoubleFunction function;
+
+        private DoubleSumTask(int begin, int end, IntToDoubleFunction function)
+        {
+            this.begin = begin;
+            this.end = end;
+            this.function = function;
+        }
+
+        @Override
+        protected Double compute()
+        {
+            if (end - begin <= THRESHOLD) {
+                double sum = 0;
+                for (int i = begin; i < end; i++) {
+                    sum += function.applyAsDouble(i);
+                }
+                return sum;
+            }
+            int middle = (begin + end) >>> 1;
+            DoubleSumTask left = new DoubleSumTask(begin, middle, function);
+            left.fork();
+            double right = new DoubleSumTask(middle, end, function).compute();
+            return left.join() + right;
+        }
+    }
+
+    private static class LongSumTask
+            extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 0L;
+
+        private final int begin;
+        private final int end;
+        private final IntToLongFunction function;
+
+        private LongSumTask(int begin, int end, IntToLongFunction function)
+        {
+            this.begin = begin;
+            this.end = end;
+            this.function = function;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (end - begin <= THRESHOLD) {
+                long sum = 0;
+                for (int i = begin; i < end; i++) {
+                    sum += function.applyAsLong(i);
+                }
+                return sum;
+            }
+            int middle = (begin + end) >>> 1;
+            LongSumTask left = new LongSumTask(begin, middle, function);
+            left.fork();
+            long right = new LongSumTask(middle, end, function).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 三角形计数, 忽略边的方向
+ */
+public final class TriangleCount
+{
+    private TriangleCount() {}
+
+    public static long count(AdjacencyGraph graph)
+    {
+        return count(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 每个三角形(u, v, w)只在u &lt; v &lt; w时计数一次: 对邻居升序排列的无向图,
+     * 求u和v在w &gt; v部分的有序邻居交集
+     *
+     * @param graph graph
+     * @param pool fork-join pool
+     * @return 三角形个数
+     */
+    public static long count(AdjacencyGraph graph, ForkJoinPool pool)
+    {
+        final AdjacencyGraph undirected = graph.toUndirected();
+        final int[] neighbors = undirected.outTargets();
+        return ParallelRange.sumLong(pool, undirected.getNodeCount(), u -> {
+            long triangles = 0;
+            int uEnd = undirected.outEnd(u);
+            for (int i = undirected.outBegin(u); i < uEnd; i++) {
+                int v = neighbors[i];
+                if (v <= u) {
+                    continue;
+                }
+                int a = i + 1;
+                int b = undirected.outBegin(v);
+                int vEnd = undirected.outEnd(v);
+                while (b < vEnd && neighbors[b] <= v) {
+                    b++;
+                }
+                while (a < uEnd && b < vEnd) {
+                    int x = neighbors[a];
+                    int y = neighbors[b];
+                    if (x == y) {
+                        triangles++;
+                        a++;
+                        b++;
+                    }
+                    else if (x < y) {
+                        a++;
+                    }
+                    else {
+                        b++;
+                    }
+                }
+            }
+            return triangles;
+        });
+    }
+}
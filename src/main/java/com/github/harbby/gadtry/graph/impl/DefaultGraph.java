@@ -21,7 +21,11 @@ import com.github.harbby.gadtry.graph.Node;
 import com.github.harbby.gadtry.graph.Route;
 import com.github.harbby.gadtry.graph.SearchBuilder;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -40,15 +44,123 @@ public class DefaultGraph<E, R>
     private final Node<E, R> root;
     private final String name;
     private final Map<String, Node<E, R>> nodes;
+    private final List<Node<E, R>> nodeTable;  //index -> node
+    private final Map<String, Map<Object, int[]>> indexes;
+    private final boolean inEdgeIndex;
 
     public DefaultGraph(
             final String name,
             Node<E, R> root,
             Map<String, Node<E, R>> nodes)
+    {
+        this(name, root, nodes, new ArrayList<>(nodes.values()), Collections.emptyMap(), false);
+    }
+
+    private DefaultGraph(
+            final String name,
+            Node<E, R> root,
+            Map<String, Node<E, R>> nodes,
+            List<Node<E, R>> nodeTable,
+            Map<String, Map<Object, int[]>> indexes,
+            boolean inEdgeIndex)
     {
         this.name = name;
         this.root = root;
         this.nodes = nodes;
+        this.nodeTable = nodeTable;
+        this.indexes = indexes;
+        this.inEdgeIndex = inEdgeIndex;
+    }
+
+    /**
+     * 复制builder阶段的节点和边, 生成不可变的graph.
+     * 节点按输入顺序分配连续的int id, 并根据indexFunctions建立节点数据的二级索引
+     *
+     * @param name graph name
+     * @param nodes builder阶段的所有节点
+     * @param rootNodeIds 没有入边的节点
+     * @param indexFunctions 索引名称 -> 从节点数据中提取索引key
+     * @param inEdgeIndex 是否建立入边索引, see: {@link Node#prevNodes()}
+     * @param <E> node data type
+     * @param <R> edge data type
+     * @return immutable graph
+     */
+    public static <E, R> DefaultGraph<E, R> of(
+            String name,
+            Collection<Node<E, R>> nodes,
+            Collection<String> rootNodeIds,
+            Map<String, Function<E, ?>> indexFunctions,
+            boolean inEdgeIndex)
+    {
+        final Map<String, Node<E, R>> nodeMap = new HashMap<>();
+        final List<Node<E, R>> nodeTable = new ArrayList<>(nodes.size());
+        final Map<String, Map<String, Edge<E, R>>> edgeMaps = new HashMap<>();
+        final Map<String, List<Edge<E, R>>> edgeLists = new HashMap<>();
+        final Map<String, List<Edge<E, R>>> prevEdgeLists = new HashMap<>();
+
+        for (Node<E, R> node : nodes) {
+            Map<String, Edge<E, R>> edgeMap = new HashMap<>();
+            List<Edge<E, R>> edgeList = new ArrayList<>(node.nextNodes().size());
+            List<Edge<E, R>> prevEdgeList = inEdgeIndex ? new ArrayList<>() : null;
+            Node<E, R> frozen = new NodeImpl<>(node.getId(), nodeTable.size(), edgeMap, edgeList, prevEdgeList, node.getData());
+            nodeMap.put(node.getId(), frozen);
+            nodeTable.add(frozen);
+            edgeMaps.put(node.getId(), edgeMap);
+            edgeLists.put(node.getId(), edgeList);
+            prevEdgeLists.put(node.getId(), prevEdgeList);
+        }
+        for (Node<E, R> node : nodes) {
+            Node<E, R> inNode = nodeMap.get(node.getId());
+            Map<String, Edge<E, R>> edgeMap = edgeMaps.get(node.getId());
+            List<Edge<E, R>> edgeList = edgeLists.get(node.getId());
+            for (Edge<E, R> edge : node.nextNodes()) {
+                Node<E, R> outNode = nodeMap.get(edge.getOutNode().getId());
+                Edge<E, R> frozenEdge = Edge.createEdge(inNode, outNode, edge.getData());
+                edgeMap.put(outNode.getId(), frozenEdge);
+                edgeList.add(frozenEdge);
+                if (inEdgeIndex) {
+                    prevEdgeLists.get(outNode.getId()).add(frozenEdge);
+                }
+            }
+        }
+
+        Map<String, Edge<E, R>> rootEdgeMap = new HashMap<>();
+        List<Edge<E, R>> rootEdgeList = new ArrayList<>(rootNodeIds.size());
+        Node<E, R> root = new NodeImpl<>("/", -1, rootEdgeMap, rootEdgeList, inEdgeIndex ? Collections.emptyList() : null, null);
+        for (String id : rootNodeIds) {
+            Edge<E, R> edge = Edge.createEdge(root, nodeMap.get(id), null);
+            rootEdgeMap.put(id, edge);
+            rootEdgeList.add(edge);
+        }
+
+        Map<String, Map<Object, int[]>> indexes = new HashMap<>();
+        indexFunctions.forEach((indexName, keyFunction) -> indexes.put(indexName, buildIndex(nodeTable, keyFunction)));
+        return new DefaultGraph<>(name, root, nodeMap, nodeTable, indexes, inEdgeIndex);
+    }
+
+    private static <E, R> Map<Object, int[]> buildIndex(List<Node<E, R>> nodeTable, Function<E, ?> keyFunction)
+    {
+        Map<Object, int[]> index = new HashMap<>();
+        Map<Object, Integer> sizes = new HashMap<>();
+        Object[] keys = new Object[nodeTable.size()];
+        for (int i = 0; i < keys.length; i++) {
+            E data = nodeTable.get(i).getData();
+            Object key = data == null ? null : keyFunction.apply(data);
+            if (key != null) {
+                keys[i] = key;
+                sizes.merge(key, 1, Integer::sum);
+            }
+        }
+        sizes.forEach((key, size) -> index.put(key, new int[size]));
+        sizes.replaceAll((key, size) -> 0);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                int offset = sizes.get(keys[i]);
+                index.get(keys[i])[offset] = i;
+                sizes.put(keys[i], offset + 1);
+            }
+        }
+        return index;
     }
 
     @Override
@@ -98,14 +210,34 @@ public class DefaultGraph<E, R>
         return requireNonNull(nodes.get(id), "NO SUCH Node " + id);
     }
 
+    @Override
+    public Node<E, R> getNode(int index)
+    {
+        if (index < 0 || index >= nodeTable.size()) {
+            throw new IndexOutOfBoundsException("NO SUCH Node index " + index);
+        }
+        return nodeTable.get(index);
+    }
+
+    @Override
+    public int getNodeCount()
+    {
+        return nodeTable.size();
+    }
+
+    @Override
+    public boolean hasInEdgeIndex()
+    {
+        return inEdgeIndex;
+    }
+
     @Override
     public List<String> printShow()
     {
         List<String> builder = new ArrayList<>();
         builder.add("/");
-        List<Node> nodes = root.nextNodes().stream().map(Edge::getOutNode).collect(Collectors.toList());
+        List<Node<E, R>> nodes = root.nextNodes().stream().map(Edge::getOutNode).collect(Collectors.toList());
         GraphUtil.printShow(builder, nodes);
-        //builder.forEach(System.out::println);
         return builder;
     }
 
@@ -118,14 +250,60 @@ public class DefaultGraph<E, R>
         builder.add("/");
 
         GraphUtil.printShow(builder, firstNode);
-        builder.forEach(System.out::println);
         return builder;
     }
 
+    @Override
+    public void printShow(Appendable out, int maxDepth, int maxWidth)
+            throws IOException
+    {
+        List<Node<E, R>> nodes = root.nextNodes().stream().map(Edge::getOutNode).collect(Collectors.toList());
+        out.append("/\n");
+        GraphUtil.printShow(out, nodes, maxDepth, maxWidth);
+    }
+
+    @Override
+    public void printShow(Appendable out, String id, int maxDepth, int maxWidth)
+            throws IOException
+    {
+        Node<E, R> firstNode = requireNonNull(nodes.get(id), "NO SUCH Node " + id);
+        out.append("/\n");
+        GraphUtil.printShow(out, Collections.singletonList(firstNode), maxDepth, maxWidth);
+    }
+
+    @Override
+    public void printDot(Appendable out)
+            throws IOException
+    {
+        GraphUtil.printDot(out, name, nodeTable);
+    }
+
+    @Override
+    public void printGraphML(Appendable out)
+            throws IOException
+    {
+        GraphUtil.printGraphML(out, name, nodeTable);
+    }
+
     @Override
     public List<Node<E, R>> findNode(Function<Node<E, R>, Boolean> rule)
     {
-        return nodes.values().stream().filter(rule::apply).collect(Collectors.toList());
+        return nodeTable.stream().filter(rule::apply).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Node<E, R>> findNode(String indexName, Object key)
+    {
+        Map<Object, int[]> index = requireNonNull(indexes.get(indexName), "NO SUCH Index " + indexName);
+        int[] nodeIndexes = index.get(key);
+        if (nodeIndexes == null) {
+            return Collections.emptyList();
+        }
+        List<Node<E, R>> list = new ArrayList<>(nodeIndexes.length);
+        for (int i : nodeIndexes) {
+            list.add(nodeTable.get(i));
+        }
+        return list;
     }
 
     @Override
@@ -19,70 +19,266 @@ import com.github.harbby.gadtry.collection.mutable.MutableList;
 import com.github.harbby.gadtry.graph.Edge;
 import com.github.harbby.gadtry.graph.Node;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+
+import static com.github.harbby.gadtry.base.MoreObjects.checkArgument;
 
 public class GraphUtil
 {
     private GraphUtil() {}
 
-//    public static class PrintContext
-//    {
-//        private final List<String> builder = new ArrayList<>();
-//        private final Set<String> looped = new HashSet<>();
-//
-//        private List<Node> nodes;
-//        private String header;
-//    }
-
-    public static void printShow(List<String> builder, List<Node> firstNodes)
+    public static void printShow(List<String> builder, List<? extends Node<?, ?>> firstNodes)
     {
-        Set<String> looped = new HashSet<>();
-        printBuilder(builder, looped, MutableList.copy(firstNodes), "├");  //MutableList.copyOf()
+        try {
+            printShow(builder::add, firstNodes, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);  //List.add() never throws IOException
+        }
     }
 
-    public static void printShow(List<String> builder, Node... firstNodes)
+    public static void printShow(List<String> builder, Node<?, ?>... firstNodes)
     {
         printShow(builder, MutableList.of(firstNodes));
     }
 
-    private static void printBuilder(List<String> builder, Set<String> looped, List<Node> nodes, String header)
+    /**
+     * 非递归打印graph结构, 每一行生成后立即写入out, 不在内存中保留已打印的行
+     *
+     * @param out 输出目标
+     * @param firstNodes 第一层节点
+     * @param maxDepth 最大打印深度, 超过深度的子节点以 ... 标记
+     * @param maxWidth 每个节点最多打印的子节点数, 超出部分以 ... 标记
+     * @throws IOException out写入失败
+     */
+    public static void printShow(Appendable out, Collection<? extends Node<?, ?>> firstNodes, int maxDepth, int maxWidth)
+            throws IOException
+    {
+        printShow(line -> out.append(line).append('\n'), firstNodes, maxDepth, maxWidth);
+    }
+
+    private static void printShow(LineWriter writer, Collection<? extends Node<?, ?>> firstNodes, int maxDepth, int maxWidth)
+            throws IOException
     {
-        for (int i = 0; i < nodes.size(); i++) {
-            Node<?, ?> node = nodes.get(i);
+        checkArgument(maxDepth > 0, "maxDepth must be > 0");
+        checkArgument(maxWidth > 0, "maxWidth must be > 0");
 
-            if (i == nodes.size() - 1) {  //end
-                header = header.substring(0, header.length() - 1) + "└";
+        final Set<Edge<?, ?>> looped = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Node<?, ?>> path = Collections.newSetFromMap(new IdentityHashMap<>());  //当前打印路径上的节点,用于发现环
+        final StringBuilder prefix = new StringBuilder();
+        final Deque<PrintFrame> stack = new ArrayDeque<>();
+
+        PrintFrame first = new PrintFrame(null, firstNodes.iterator(), null, 1, 0);
+        first.next = first.advance(looped);
+        stack.push(first);
+
+        while (!stack.isEmpty()) {
+            PrintFrame frame = stack.peek();
+            Node<?, ?> node = frame.next;
+            if (node == null || frame.printed == maxWidth) {
+                if (node != null) {
+                    writer.write(prefix + "└────...");
+                }
+                stack.pop();
+                path.remove(frame.parent);
+                prefix.setLength(frame.prefixLength);
+                continue;
+            }
+
+            frame.next = frame.advance(looped);
+            frame.printed++;
+            boolean last = frame.next == null;
+            String line = prefix + (last ? "└" : "├") + "────" + node.getId();
+
+            if (path.contains(node)) {
+                writer.write(line + " (cycle)");
+                continue;
+            }
+            if (frame.depth >= maxDepth) {
+                writer.write(node.nextNodes().isEmpty() ? line : line + " ...");
+                continue;
             }
-            String line = header + "────" + node.getId();
-            builder.add(line);
+            writer.write(line);
 
-            List<Node> nexts = node.nextNodes().stream().filter(edge -> {
-                String rowkey = node.getId() + "->" + edge.getOutNode().getId();
-                return looped.add(rowkey);
-            }).map(Edge::getOutNode).collect(Collectors.toList());
+            int prefixLength = prefix.length();
+            prefix.append(last ? " " : "│").append("    ");
+            PrintFrame child = new PrintFrame(node, null, node.nextNodes().iterator(), frame.depth + 1, prefixLength);
+            child.next = child.advance(looped);
+            if (child.next == null) {
+                prefix.setLength(prefixLength);
+            }
+            else {
+                path.add(node);
+                stack.push(child);
+            }
+        }
+    }
 
-            String f = (node.nextNodes().size() > 1) ? "├" : "└";
-            printBuilder(builder, looped, nexts, getNextLineHeader(line, node.getId()) + f);
+    /**
+     * 以Graphviz DOT格式导出graph
+     *
+     * @param out 输出目标
+     * @param name graph name
+     * @param nodes 所有节点
+     * @throws IOException out写入失败
+     */
+    public static void printDot(Appendable out, String name, Collection<? extends Node<?, ?>> nodes)
+            throws IOException
+    {
+        out.append("digraph ").append(dotQuote(name == null ? "G" : name)).append(" {\n");
+        for (Node<?, ?> node : nodes) {
+            out.append("  ").append(dotQuote(node.getId()));
+            if (node.getData() != null) {
+                out.append(" [tooltip=").append(dotQuote(String.valueOf(node.getData()))).append(']');
+            }
+            out.append(";\n");
         }
+        for (Node<?, ?> node : nodes) {
+            for (Edge<?, ?> edge : node.nextNodes()) {
+                out.append("  ").append(dotQuote(node.getId()))
+                        .append(" -> ").append(dotQuote(edge.getOutNode().getId()));
+                if (edge.getData() != null) {
+                    out.append(" [label=").append(dotQuote(String.valueOf(edge.getData()))).append(']');
+                }
+                out.append(";\n");
+            }
+        }
+        out.append("}\n");
     }
 
-    private static String getNextLineHeader(String lastLine, String id)
+    /**
+     * 以GraphML格式导出graph
+     *
+     * @param out 输出目标
+     * @param name graph name
+     * @param nodes 所有节点
+     * @throws IOException out写入失败
+     */
+    public static void printGraphML(Appendable out, String name, Collection<? extends Node<?, ?>> nodes)
+            throws IOException
     {
-        StringBuilder buffer = new StringBuilder();
-        for (int i = 0; i < lastLine.length() - id.length(); i++) {
-            char a1 = lastLine.charAt(i);
-            switch (a1) {
-                case '├':
-                case '│':
-                    buffer.append("│");
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n")
+                .append("  <key id=\"d0\" for=\"node\" attr.name=\"data\" attr.type=\"string\"/>\n")
+                .append("  <key id=\"d1\" for=\"edge\" attr.name=\"data\" attr.type=\"string\"/>\n")
+                .append("  <graph id=\"").append(xmlEscape(name == null ? "G" : name)).append("\" edgedefault=\"directed\">\n");
+        for (Node<?, ?> node : nodes) {
+            out.append("    <node id=\"").append(xmlEscape(node.getId())).append('"');
+            if (node.getData() == null) {
+                out.append("/>\n");
+            }
+            else {
+                out.append("><data key=\"d0\">").append(xmlEscape(String.valueOf(node.getData()))).append("</data></node>\n");
+            }
+        }
+        for (Node<?, ?> node : nodes) {
+            for (Edge<?, ?> edge : node.nextNodes()) {
+                out.append("    <edge source=\"").append(xmlEscape(node.getId()))
+                        .append("\" target=\"").append(xmlEscape(edge.getOutNode().getId())).append('"');
+                if (edge.getData() == null) {
+                    out.append("/>\n");
+                }
+                else {
+                    out.append("><data key=\"d1\">").append(xmlEscape(String.valueOf(edge.getData()))).append("</data></edge>\n");
+                }
+            }
+        }
+        out.append("  </graph>\n")
+                .append("</graphml>\n");
+    }
+
+    private static String dotQuote(String value)
+    {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String xmlEscape(String value)
+    {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                case '\'':
+                    builder.append("&apos;");
                     break;
                 default:
-                    buffer.append(" ");
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    @FunctionalInterface
+    private interface LineWriter
+    {
+        void write(String line)
+                throws IOException;
+    }
+
+    private static class PrintFrame
+    {
+        private final Node<?, ?> parent;
+        private final Iterator<? extends Node<?, ?>> nodes;
+        private final Iterator<? extends Edge<?, ?>> edges;
+        private final int depth;
+        private final int prefixLength;
+
+        private Node<?, ?> next;
+        private int printed;
+
+        private PrintFrame(Node<?, ?> parent, Iterator<? extends Node<?, ?>> nodes, Iterator<? extends Edge<?, ?>> edges, int depth, int prefixLength)
+        {
+            this.parent = parent;
+            this.nodes = nodes;
+            this.edges = edges;
+            this.depth = depth;
+            this.prefixLength = prefixLength;
+        }
+
+        /**
+         * 预读下一个需要打印的节点, 已经打印过的边会被跳过
+         */
+        private Node<?, ?> advance(Set<Edge<?, ?>> looped)
+        {
+            if (nodes != null) {
+                return nodes.hasNext() ? nodes.next() : null;
+            }
+            while (edges.hasNext()) {
+                Edge<?, ?> edge = edges.next();
+                if (looped.add(edge)) {
+                    return edge.getOutNode();
+                }
             }
+            return null;
         }
-        return buffer.toString();
     }
 }
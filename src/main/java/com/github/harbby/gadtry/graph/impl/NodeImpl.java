@@ -27,13 +27,27 @@ public class NodeImpl<E, R>
         implements Node<E, R>
 {
     private final String id;
+    private final int index;
     private final Map<String, Edge<E, R>> nextNodes;
+    private final Collection<Edge<E, R>> nextEdges;
+    private final Collection<Edge<E, R>> prevEdges;  //null表示没有建立入边索引
     private final E data;
 
     public NodeImpl(String id, Map<String, Edge<E, R>> nextNodes, E data)
+    {
+        this(id, -1, nextNodes, nextNodes.values(), null, data);
+    }
+
+    /**
+     * nextEdges与nextNodes保存相同的边, nextEdges用于遍历, nextNodes用于按id查找
+     */
+    NodeImpl(String id, int index, Map<String, Edge<E, R>> nextNodes, Collection<Edge<E, R>> nextEdges, Collection<Edge<E, R>> prevEdges, E data)
     {
         this.id = id;
+        this.index = index;
         this.nextNodes = Collections.unmodifiableMap(nextNodes);
+        this.nextEdges = Collections.unmodifiableCollection(nextEdges);
+        this.prevEdges = prevEdges == null ? null : Collections.unmodifiableCollection(prevEdges);
         this.data = data;
     }
 
@@ -49,10 +63,16 @@ public class NodeImpl<E, R>
         return id;
     }
 
+    @Override
+    public int getIndex()
+    {
+        return index;
+    }
+
     @Override
     public Collection<Edge<E, R>> nextNodes()
     {
-        return nextNodes.values();
+        return nextEdges;
     }
 
     @Override
@@ -61,6 +81,15 @@ public class NodeImpl<E, R>
         return Optional.ofNullable(nextNodes.get(id));
     }
 
+    @Override
+    public Collection<Edge<E, R>> prevNodes()
+    {
+        if (prevEdges == null) {
+            return Node.super.prevNodes();
+        }
+        return prevEdges;
+    }
+
     @Override
     public String toString()
     {
@@ -45,9 +45,16 @@ public class RouteImpl<E, R>
         this.edges = edges;
         this.findDeadLoop = Lazys.goLazy(() -> {
             Edge<E, R> lastEdge = getLastEdge();
-            return begin.getId().equals(lastEdge.getOutNode().getId()) ||
-                    edges.stream().anyMatch(erEdge -> erEdge != lastEdge && erEdge.getOutNode().getId()
-                            .equals(getLastNode().getId())); //如果出现两次则无须继续递归查找
+            Node<E, R> lastNode = lastEdge.getOutNode();
+            if (isSameNode(begin, lastNode)) {
+                return true;
+            }
+            for (Edge<E, R> erEdge : edges) {
+                if (erEdge != lastEdge && isSameNode(erEdge.getOutNode(), lastNode)) {
+                    return true;  //如果出现两次则无须继续递归查找
+                }
+            }
+            return false;
         });
         this.nodeIds = Lazys.goLazy(() -> {
             List<String> list = new ArrayList<>(this.size() + 1);
@@ -59,6 +66,20 @@ public class RouteImpl<E, R>
         });
     }
 
+    /**
+     * 已冻结的graph中节点拥有唯一的int id, 可以直接比较而无须比较String id
+     */
+    private static boolean isSameNode(Node<?, ?> a, Node<?, ?> b)
+    {
+        if (a == b) {
+            return true;
+        }
+        if (a.getIndex() >= 0 && b.getIndex() >= 0) {
+            return false;
+        }
+        return a.getId().equals(b.getId());
+    }
+
     @Override
     public Route.Builder<E, R> copy()
     {
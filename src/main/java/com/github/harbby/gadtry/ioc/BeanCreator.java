@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+/**
+ * 直接调用构造器和字段赋值的bean工厂, 代替反射的{@code Constructor.newInstance}和{@code Field.set}.
+ * 可以由IocFactory运行时生成, 也可以在编译期生成
+ * <p>
+ * 约定:
+ * newInstance的参数顺序与选中的构造器参数顺序一致;
+ * setField的index为该class中所有@Autowired字段按字段名排序后的下标, 只需要支持非private, 非final, 非static的字段
+ *
+ * @param <T> bean type
+ */
+public interface BeanCreator<T>
+{
+    public T newInstance(Object[] args);
+
+    public void setField(T instance, int index, Object value);
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 使用javassist为bean生成{@link BeanCreator}, 生成的class与bean位于同一个ClassLoader和package,
+ * 因此可以直接访问非private的构造器和字段
+ */
+final class BeanCreatorGenerator
+{
+    static final String CLASS_SUFFIX = "$$GadtryBeanCreator";
+    //每个ClassLoader共享一个ClassPool, ClassPool不是线程安全的, 使用时需要synchronized(pool)
+    private static final Map<ClassLoader, ClassPool> classPools = new WeakHashMap<>();
+
+    private BeanCreatorGenerator() {}
+
+    /**
+     * @return true 可以为该构造器生成直接调用的代码
+     */
+    static boolean isSupported(Class<?> driver, Constructor<?> constructor)
+    {
+        if (driver.getClassLoader() == null || driver.getName().startsWith("java.")
+                || Modifier.isPrivate(constructor.getModifiers())
+                || Modifier.isPrivate(driver.getModifiers())) {
+            return false;
+        }
+        for (Class<?> type : constructor.getParameterTypes()) {
+            if (type.isPrimitive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true 可以由生成的代码直接赋值, 否则使用反射
+     */
+    static boolean isDirectField(Field field)
+    {
+        int modifiers = field.getModifiers();
+        return !(Modifier.isPrivate(modifiers) || Modifier.isFinal(modifiers) || Modifier.isStatic(modifiers))
+                && !field.getType().isPrimitive();
+    }
+
+    private static ClassPool getClassPool(ClassLoader loader)
+    {
+        synchronized (classPools) {
+            return classPools.computeIfAbsent(loader, k -> {
+                ClassPool classPool = new ClassPool(true);
+                classPool.appendClassPath(new LoaderClassPath(k));
+                return classPool;
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> BeanCreator<T> generate(Class<T> driver, Constructor<T> constructor, Field[] fields)
+            throws Exception
+    {
+        ClassLoader loader = driver.getClassLoader();
+        ClassPool classPool = getClassPool(loader);
+        Class<?> aClass;
+        synchronized (classPool) {
+            CtClass creatorClass = classPool.makeClass(driver.getName() + CLASS_SUFFIX);
+            try {
+                aClass = defineCreatorClass(classPool, creatorClass, driver, constructor, fields);
+            }
+            finally {
+                creatorClass.detach();  //生成失败时也从共享的ClassPool中移除
+            }
+        }
+        return (BeanCreator<T>) aClass.newInstance();
+    }
+
+    private static Class<?> defineCreatorClass(ClassPool classPool, CtClass creatorClass, Class<?> driver, Constructor<?> constructor, Field[] fields)
+            throws Exception
+    {
+        creatorClass.addInterface(classPool.get(BeanCreator.class.getName()));
+        creatorClass.setModifiers(javassist.Modifier.PUBLIC | javassist.Modifier.FINAL);
+
+        StringBuilder newInstance = new StringBuilder("public Object newInstance(Object[] args) { return new ")
+                .append(driver.getName()).append('(');
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                newInstance.append(", ");
+            }
+            newInstance.append('(').append(parameterTypes[i].getTypeName()).append(") args[").append(i).append(']');
+        }
+        newInstance.append("); }");
+        creatorClass.addMethod(CtMethod.make(newInstance.toString(), creatorClass));
+
+        StringBuilder setField = new StringBuilder("public void setField(Object instance, int index, Object value) { ")
+                .append(driver.getName()).append(" bean = (").append(driver.getName()).append(") instance; ");
+        for (int i = 0; i < fields.length; i++) {
+            if (isDirectField(fields[i])) {
+                setField.append("if (index == ").append(i).append(") { bean.").append(fields[i].getName())
+                        .append(" = (").append(fields[i].getType().getTypeName()).append(") value; return; } ");
+            }
+        }
+        setField.append("throw new IllegalArgumentException(\"field \" + index + \" is not accessible\"); }");
+        creatorClass.addMethod(CtMethod.make(setField.toString(), creatorClass));
+
+        return creatorClass.toClass(driver.getClassLoader(), driver.getProtectionDomain());
+    }
+}
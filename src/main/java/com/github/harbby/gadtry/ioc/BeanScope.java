@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.function.Creator;
+
+/**
+ * 自定义bean scope, 决定每次获取bean时复用已有实例还是创建新实例.
+ * 通过{@link Binder.Scope#withScope(BeanScope)}使用
+ */
+public interface BeanScope
+{
+    /**
+     * 整个IocFactory只创建一个实例
+     */
+    public static final BeanScope SINGLETON = new BeanScope()
+    {
+        @Override
+        public <T> Creator<T> scope(Class<T> key, Creator<T> unscoped)
+        {
+            return SingletonCreator.of(unscoped);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "SINGLETON";
+        }
+    };
+
+    /**
+     * 每个线程只创建一个实例, 适合创建成本高且非线程安全的bean
+     */
+    public static final BeanScope THREAD_LOCAL = new BeanScope()
+    {
+        @Override
+        public <T> Creator<T> scope(Class<T> key, Creator<T> unscoped)
+        {
+            return new ThreadLocalCreator<>(unscoped);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "THREAD_LOCAL";
+        }
+    };
+
+    /**
+     * @param key 绑定的key
+     * @param unscoped 每次调用都创建新实例的creator
+     * @param <T> bean type
+     * @return 带有scope的creator
+     */
+    public <T> Creator<T> scope(Class<T> key, Creator<T> unscoped);
+}
@@ -15,12 +15,11 @@
  */
 package com.github.harbby.gadtry.ioc;
 
-import com.github.harbby.gadtry.base.Lazys;
-import com.github.harbby.gadtry.collection.mutable.MutableMap;
 import com.github.harbby.gadtry.function.Creator;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.github.harbby.gadtry.base.MoreObjects.checkState;
 import static java.util.Objects.requireNonNull;
@@ -61,29 +60,12 @@ public interface BindMapping
             bindMapping.put(type, creator);
         }
 
+        /**
+         * @return 当前绑定的不可变快照, 之后的bind不会影响已经build的BindMapping
+         */
         public BindMapping build()
         {
-            return new BindMapping()
-            {
-                @SuppressWarnings("unchecked")
-                @Override
-                public <T> Creator<T> getOrDefault(Class<T> type, Creator<T> defaultValue)
-                {
-                    return (Creator<T>) bindMapping.getOrDefault(type, defaultValue);
-                }
-
-                @Override
-                public Map<Class<?>, Creator<?>> getAllBeans()
-                {
-                    return MutableMap.copy(bindMapping);
-                }
-
-                @Override
-                public String toString()
-                {
-                    return bindMapping.toString();
-                }
-            };
+            return new ImmutableBindMapping(bindMapping);
         }
     }
 
@@ -94,15 +76,34 @@ public interface BindMapping
 
     public static BindMapping create(IocFactory.ReplaceHandler proxyHandler, Bean... beans)
     {
-        requireNonNull(proxyHandler, "proxyHandler is null");
+        return create(proxyHandler, false, beans);
+    }
+
+    /**
+     * @param generateBeanCreator true 使用生成的{@link BeanCreator}创建noScope和singleton bean
+     */
+    public static BindMapping create(IocFactory.ReplaceHandler proxyHandler, boolean generateBeanCreator, Bean... beans)
+    {
+        return create(proxyHandler, generateBeanCreator, null, beans);
+    }
+
+    /**
+     * @param profiler 记录bean的构造和代理耗时, null表示不记录
+     */
+    public static BindMapping create(IocFactory.ReplaceHandler replaceHandler, boolean generateBeanCreator, StartupProfiler profiler, Bean... beans)
+    {
+        requireNonNull(replaceHandler, "proxyHandler is null");
+        final IocFactory.ReplaceHandler proxyHandler = profiler != null && replaceHandler != IocFactory.ReplaceHandler.INSTANCE
+                ? profiler.wrap(replaceHandler) : replaceHandler;
         final BindMapping.Builder builder = BindMapping.builder();
-        final InternalContext context = InternalContext.of(builder.build(), (x) -> null);
+        //绑定表在configure完成之后才生成, creator在第一次get时才会使用context
+        final AtomicReference<InternalContext> context = new AtomicReference<>();
         final Binder binder = new Binder()
         {
             @Override
             public <T> void bind(Class<T> key, T instance)
             {
-                builder.bind(key, Lazys.goLazy(() -> proxyHandler.replace(key, instance)));
+                builder.bind(key, SingletonCreator.of(() -> proxyHandler.replace(key, instance)));
             }
 
             @Override
@@ -113,47 +114,54 @@ public interface BindMapping
                     @Override
                     public void withSingle()
                     {
+                        withScope(BeanScope.SINGLETON);
+                    }
+
+                    @Override
+                    public void withScope(BeanScope scope)
+                    {
+                        requireNonNull(scope, "scope is null");
                         checkState(!key.isInterface(), key + "key is Interface");
-                        Creator<T> creator = () -> proxyHandler.replace(key, context.getByNew(key));
-                        builder.bind(key, Lazys.goLazy(creator));
+                        Creator<T> creator = () -> proxyHandler.replace(key, context.get().getByNew(key));
+                        builder.bind(key, scope.scope(key, creator));
                     }
 
                     @Override
                     public void noScope()
                     {
                         checkState(!key.isInterface(), key + "key is Interface");
-                        Creator<T> creator = () -> proxyHandler.replace(key, context.getByNew(key));
+                        Creator<T> creator = () -> proxyHandler.replace(key, context.get().getByNew(key));
                         builder.bind(key, creator);
                     }
 
                     @Override
                     public Scope by(Class<? extends T> createClass)
                     {
-                        Creator<T> creator = () -> proxyHandler.replace(key, context.getByNew(createClass));
+                        Creator<T> creator = () -> proxyHandler.replace(key, context.get().getByNew(createClass));
                         builder.bind(key, creator);
-                        return () -> builder.bindUpdate(key, Lazys.goLazy(creator));
+                        return (ScopeSetter) scope -> builder.bindUpdate(key, scope.scope(key, creator));
                     }
 
                     @Override
                     public void byInstance(T instance)
                     {
-                        builder.bind(key, Lazys.goLazy(() -> proxyHandler.replace(key, instance)));
+                        builder.bind(key, SingletonCreator.of(() -> proxyHandler.replace(key, instance)));
                     }
 
                     @Override
                     public Scope byCreator(Creator<? extends T> creator)
                     {
-                        Creator<? extends T> proxyCreator = () -> proxyHandler.replace(key, creator.get());
+                        Creator<T> proxyCreator = () -> proxyHandler.replace(key, creator.get());
                         builder.bind(key, proxyCreator);
-                        return () -> builder.bindUpdate(key, Lazys.goLazy(proxyCreator));
+                        return (ScopeSetter) scope -> builder.bindUpdate(key, scope.scope(key, proxyCreator));
                     }
 
                     @Override
                     public Scope byCreator(Class<? extends Creator<T>> creatorClass)
                     {
-                        Creator<? extends T> proxyCreator = () -> proxyHandler.replace(key, context.getByNew(creatorClass).get());
+                        Creator<T> proxyCreator = () -> proxyHandler.replace(key, context.get().getByNew(creatorClass).get());
                         builder.bind(key, proxyCreator);
-                        return () -> builder.bindUpdate(key, Lazys.goLazy(proxyCreator));
+                        return (ScopeSetter) scope -> builder.bindUpdate(key, scope.scope(key, proxyCreator));
                     }
                 };
             }
@@ -163,6 +171,8 @@ public interface BindMapping
             bean.configure(binder);
         }
 
-        return builder.build();
+        BindMapping bindMapping = builder.build();
+        context.set(InternalContext.of(bindMapping, (x) -> null, generateBeanCreator, profiler));
+        return bindMapping;
     }
 }
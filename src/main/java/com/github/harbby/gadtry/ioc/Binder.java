@@ -17,6 +17,8 @@ package com.github.harbby.gadtry.ioc;
 
 import com.github.harbby.gadtry.function.Creator;
 
+import static java.util.Objects.requireNonNull;
+
 public interface Binder
 {
     public <T> void bind(Class<T> key, T instance);
@@ -40,5 +42,27 @@ public interface Binder
         public void withSingle();
 
         public default void noScope() {}
+
+        /**
+         * 每个线程一个实例
+         */
+        public default void withThreadLocal()
+        {
+            withScope(BeanScope.THREAD_LOCAL);
+        }
+
+        /**
+         * 默认实现只支持{@link BeanScope#SINGLETON}, 其余scope需要实现类覆盖此方法
+         *
+         * @param scope 自定义scope, see: {@link PoolScope}
+         */
+        public default void withScope(BeanScope scope)
+        {
+            requireNonNull(scope, "scope is null");
+            if (scope != BeanScope.SINGLETON) {
+                throw new UnsupportedOperationException(getClass().getName() + " not support scope " + scope);
+            }
+            withSingle();
+        }
     }
 }
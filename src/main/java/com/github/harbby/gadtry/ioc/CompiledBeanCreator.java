@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+/**
+ * 编译期由gadtry-processor生成的{@link BeanCreator}, class名为bean的binary name + {@code $$GadtryBeanCreator}.
+ * 同时携带构造器参数和@Autowired字段的类型, IocFactory找到它后不再反射分析该class
+ *
+ * @param <T> bean type
+ */
+public interface CompiledBeanCreator<T>
+        extends BeanCreator<T>
+{
+    public Class<?>[] getParameterTypes();
+
+    /**
+     * 下标与{@link #setField(Object, int, Object)}的index一致
+     */
+    public Class<?>[] getFieldTypes();
+}
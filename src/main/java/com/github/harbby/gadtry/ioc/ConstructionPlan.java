@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.function.Creator;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static com.github.harbby.gadtry.base.MoreObjects.checkState;
+
+/**
+ * 一个class的构造计划: 选中的构造器, 构造器参数类型和需要注入的@Autowired字段.
+ * 每个class只反射分析一次, 结果缓存在ClassValue中, 之后每次实例化都直接复用.
+ * 如果classpath中存在编译期生成的{@link CompiledBeanCreator}, 则直接使用它, 不做任何反射分析
+ */
+final class ConstructionPlan<T>
+{
+    private static final ClassValue<ConstructionPlan<?>> PLANS = new ClassValue<ConstructionPlan<?>>()
+    {
+        @Override
+        protected ConstructionPlan<?> computeValue(Class<?> type)
+        {
+            return create(type);
+        }
+    };
+
+    private final Class<T> driver;
+    private final Constructor<T> constructor;  //compiled时为null
+    private final Class<?>[] parameterTypes;
+    private final Field[] fields;  //按字段名排序, 下标与BeanCreator.setField的index一致, compiled时为null
+    private final Class<?>[] fieldTypes;
+    private final boolean[] directFields;
+    private final boolean compiled;
+
+    private volatile BeanCreator<T> beanCreator;
+    private volatile boolean beanCreatorResolved;
+    private volatile Boolean constructorCycle;
+
+    private ConstructionPlan(Class<T> driver)
+    {
+        this.driver = driver;
+        this.constructor = selectConstructor(driver);
+        constructor.setAccessible(true);
+        this.parameterTypes = constructor.getParameterTypes();
+
+        List<Field> autowiredFields = new ArrayList<>();
+        for (Field field : driver.getDeclaredFields()) {
+            if (field.getAnnotation(Autowired.class) != null) {
+                field.setAccessible(true);
+                autowiredFields.add(field);
+            }
+        }
+        autowiredFields.sort(Comparator.comparing(Field::getName));
+        this.fields = autowiredFields.toArray(new Field[0]);
+        this.fieldTypes = new Class<?>[fields.length];
+        this.directFields = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            fieldTypes[i] = fields[i].getType();
+            directFields[i] = BeanCreatorGenerator.isDirectField(fields[i]);
+        }
+        this.compiled = false;
+    }
+
+    private ConstructionPlan(Class<T> driver, CompiledBeanCreator<T> compiledCreator)
+    {
+        this.driver = driver;
+        this.constructor = null;
+        this.parameterTypes = compiledCreator.getParameterTypes();
+        this.fields = null;
+        this.fieldTypes = compiledCreator.getFieldTypes();
+        this.directFields = new boolean[fieldTypes.length];
+        Arrays.fill(directFields, true);  //processor只为所有字段都可以直接赋值的class生成代码
+        this.compiled = true;
+        this.beanCreator = compiledCreator;
+        this.beanCreatorResolved = true;
+    }
+
+    private static <T> ConstructionPlan<T> create(Class<T> driver)
+    {
+        CompiledBeanCreator<T> compiled = loadCompiledBeanCreator(driver);
+        return compiled == null ? new ConstructionPlan<>(driver) : new ConstructionPlan<>(driver, compiled);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompiledBeanCreator<T> loadCompiledBeanCreator(Class<T> driver)
+    {
+        ClassLoader loader = driver.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        try {
+            Class<?> creatorClass = Class.forName(driver.getName() + BeanCreatorGenerator.CLASS_SUFFIX, true, loader);
+            if (CompiledBeanCreator.class.isAssignableFrom(creatorClass)) {
+                return (CompiledBeanCreator<T>) creatorClass.newInstance();
+            }
+        }
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException | LinkageError ignored) {
+            //没有编译期生成的代码
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> ConstructionPlan<T> of(Class<T> driver)
+    {
+        return (ConstructionPlan<T>) PLANS.get(driver);
+    }
+
+    Class<T> getDriver()
+    {
+        return driver;
+    }
+
+    Constructor<T> getConstructor()
+    {
+        return constructor;
+    }
+
+    /**
+     * 直接返回内部数组, 调用方不能修改
+     */
+    Class<?>[] getParameterTypes()
+    {
+        return parameterTypes;
+    }
+
+    Field[] getFields()
+    {
+        return fields;
+    }
+
+    /**
+     * 直接返回内部数组, 调用方不能修改
+     */
+    Class<?>[] getFieldTypes()
+    {
+        return fieldTypes;
+    }
+
+    boolean isCompiled()
+    {
+        return compiled;
+    }
+
+    /**
+     * 沿构造器参数类型能否回到driver自身, 不考虑绑定关系. 第一次调用时计算, 之后直接返回缓存结果
+     */
+    boolean hasConstructorCycle()
+    {
+        Boolean cycle = constructorCycle;
+        if (cycle == null) {
+            cycle = hasConstructorCycle(driver, type -> false);
+            constructorCycle = cycle;
+        }
+        return cycle;
+    }
+
+    /**
+     * 从driver的构造器参数出发, 跳过skip的类型, 判断是否存在回到driver的构造器依赖链
+     */
+    static boolean hasConstructorCycle(Class<?> driver, Predicate<Class<?>> skip)
+    {
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> stack = new ArrayDeque<>();
+        stack.push(driver);
+        while (!stack.isEmpty()) {
+            ConstructionPlan<?> plan = tryOf(stack.pop());
+            if (plan == null) {
+                continue;
+            }
+            for (Class<?> type : plan.parameterTypes) {
+                if (type == driver) {
+                    return true;
+                }
+                if (!skip.test(type) && visited.add(type)) {
+                    stack.push(type);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return null 该类型不能由IocFactory直接构造
+     */
+    static ConstructionPlan<?> tryOf(Class<?> type)
+    {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            return of(type);
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param generated true 优先使用生成的{@link BeanCreator}, 不支持时使用反射.
+     * 编译期生成的{@link CompiledBeanCreator}总是会被使用
+     */
+    T newInstance(Object[] args, boolean generated)
+            throws Exception
+    {
+        BeanCreator<T> creator = generated || compiled ? getBeanCreator() : null;
+        return creator == null ? constructor.newInstance(args) : creator.newInstance(args);
+    }
+
+    void setField(T instance, int index, Object value, boolean generated)
+            throws IllegalAccessException
+    {
+        BeanCreator<T> creator = (generated || compiled) && directFields[index] ? getBeanCreator() : null;
+        if (creator == null) {
+            fields[index].set(instance, value);
+        }
+        else {
+            creator.setField(instance, index, value);
+        }
+    }
+
+    /**
+     * 第一次使用时生成, 无法生成时返回null并且不再重试
+     */
+    BeanCreator<T> getBeanCreator()
+    {
+        if (!beanCreatorResolved) {
+            synchronized (this) {
+                if (!beanCreatorResolved) {
+                    if (BeanCreatorGenerator.isSupported(driver, constructor)) {
+                        try {
+                            beanCreator = BeanCreatorGenerator.generate(driver, constructor, fields);
+                        }
+                        catch (Exception | LinkageError ignored) {
+                            //使用反射
+                        }
+                    }
+                    beanCreatorResolved = true;
+                }
+            }
+        }
+        return beanCreator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Constructor<T> selectConstructor(Class<T> driver)
+    {
+        Constructor<T>[] constructors;
+        if (Creator.class.isAssignableFrom(driver)) {
+            constructors = (Constructor<T>[]) driver.getDeclaredConstructors();
+        }
+        else {
+            if (driver.isInterface() || Modifier.isAbstract(driver.getModifiers())) {
+                throw new IllegalStateException(driver + " cannot be instantiated, No binding entity class");
+            }
+            constructors = (Constructor<T>[]) driver.getConstructors(); //public
+        }
+
+        Constructor<T> noParameter = null;
+        for (Constructor<T> constructor : constructors) {
+            Autowired autowired = constructor.getAnnotation(Autowired.class);
+            if (autowired != null) {
+                return constructor;
+            }
+            if (constructor.getParameterCount() == 0) {
+                //find 'no parameter' Constructor, using class.newInstance()";
+                noParameter = constructor;
+            }
+        }
+
+        if (noParameter != null) {
+            return noParameter;
+        }
+
+        checkState(constructors.length == 1, String.format("%s has multiple public constructors, please ensure that there is only one", driver));
+        return constructors[0];
+    }
+}
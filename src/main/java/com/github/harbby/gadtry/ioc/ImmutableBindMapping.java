@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.collection.mutable.MutableMap;
+import com.github.harbby.gadtry.function.Creator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * build()之后不可变的绑定表. 构造时复制到final HashMap之后不再修改, 多线程并发读取时不需要加锁
+ */
+final class ImmutableBindMapping
+        implements BindMapping
+{
+    private final Map<Class<?>, Creator<?>> bindMapping;
+
+    ImmutableBindMapping(Map<Class<?>, Creator<?>> bindMapping)
+    {
+        this.bindMapping = new HashMap<>(bindMapping);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Creator<T> getOrDefault(Class<T> type, Creator<T> defaultValue)
+    {
+        Creator<T> creator = (Creator<T>) bindMapping.get(type);
+        return creator == null ? defaultValue : creator;
+    }
+
+    @Override
+    public Map<Class<?>, Creator<?>> getAllBeans()
+    {
+        return MutableMap.copy(bindMapping);
+    }
+
+    @Override
+    public String toString()
+    {
+        return bindMapping.toString();
+    }
+}
@@ -18,56 +18,64 @@ package com.github.harbby.gadtry.ioc;
 import com.github.harbby.gadtry.function.Creator;
 import com.github.harbby.gadtry.function.exception.Function;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.github.harbby.gadtry.base.MoreObjects.checkState;
 import static com.github.harbby.gadtry.base.Throwables.throwsException;
 import static com.github.harbby.gadtry.base.Throwables.throwsThrowable;
 
+/**
+ * 无状态, 可以被多个线程共享.
+ * 循环依赖在每个class第一次构造时根据{@link ConstructionPlan}检查, 之后的解析不再有ThreadLocal和集合操作
+ */
 class InternalContext
 {
-    private final ThreadLocal<Set<Class<?>>> deps = ThreadLocal.withInitial(HashSet::new);
     private final Function<Class<?>, ?> userCreator;
     private final BindMapping binds;
+    private final boolean generateBeanCreator;
+    private final StartupProfiler profiler;  //nullable
+    //原始依赖成环但被绑定打断的类型, 只需结合绑定检查一次
+    private final Set<Class<?>> boundCycleChecked = ConcurrentHashMap.newKeySet();
 
-    private InternalContext(BindMapping binds, Function<Class<?>, ?> userCreator)
+    private InternalContext(BindMapping binds, Function<Class<?>, ?> userCreator, boolean generateBeanCreator, StartupProfiler profiler)
     {
         this.binds = binds;
         this.userCreator = userCreator;
+        this.generateBeanCreator = generateBeanCreator;
+        this.profiler = profiler;
     }
 
     public static InternalContext of(BindMapping binds, Function<Class<?>, ?> userCreator)
     {
-        return new InternalContext(binds, userCreator);
+        return of(binds, userCreator, false);
     }
 
-    public <T> T get(Class<T> driver)
+    /**
+     * @param generateBeanCreator true 使用生成的{@link BeanCreator}创建bean和注入字段, 代替反射
+     */
+    public static InternalContext of(BindMapping binds, Function<Class<?>, ?> userCreator, boolean generateBeanCreator)
     {
-        Set<Class<?>> depCLass = deps.get();
-        depCLass.clear();
-        depCLass.add(driver);
+        return of(binds, userCreator, generateBeanCreator, null);
+    }
 
-        T t = getInstance(driver);
-        depCLass.clear();
-        return t;
+    /**
+     * @param profiler 记录每个bean的构造耗时, null表示不记录
+     */
+    public static InternalContext of(BindMapping binds, Function<Class<?>, ?> userCreator, boolean generateBeanCreator, StartupProfiler profiler)
+    {
+        return new InternalContext(binds, userCreator, generateBeanCreator, profiler);
     }
 
-    public <T> T getByNew(Class<T> driver)
+    public <T> T get(Class<T> driver)
     {
-        Set<Class<?>> depCLass = deps.get();
-        depCLass.clear();
-        depCLass.add(driver);
+        return getInstance(driver);
+    }
 
-        T t = getNewInstance(driver);
-        depCLass.clear();
-        return t;
+    public <T> T getByNew(Class<T> driver)
+    {
+        return getNewInstance(driver);
     }
 
     private <T> T getInstance(Class<T> driver)
@@ -90,79 +98,62 @@ class InternalContext
         }
     }
 
-    private boolean check(Class<?> type)
+    private <T> T newInstance(Class<T> driver)
+            throws Exception
     {
-        return !deps.get().contains(type);
+        if (profiler == null) {
+            return newInstance(resolvePlan(driver));
+        }
+        StartupProfiler.Record record = profiler.begin(driver);
+        try {
+            long start = System.nanoTime();
+            ConstructionPlan<T> plan = resolvePlan(driver);
+            record.setReflectionNanos(System.nanoTime() - start);
+            return newInstance(plan);
+        }
+        finally {
+            profiler.end(record);
+        }
     }
 
-    private <T> T newInstance(Class<T> driver)
-            throws Exception
+    private <T> ConstructionPlan<T> resolvePlan(Class<T> driver)
     {
-        final Constructor<T> constructor = selectConstructor(driver);
-        constructor.setAccessible(true);
+        final ConstructionPlan<T> plan = ConstructionPlan.of(driver);
+        if (plan.hasConstructorCycle() && !boundCycleChecked.contains(driver)) {
+            //已绑定的类型由自己的creator创建, 可能打断依赖环, 只在这种少见的情况下结合绑定重新检查
+            checkState(!ConstructionPlan.hasConstructorCycle(driver, type -> binds.getOrDefault(type, null) != null),
+                    "Found a circular dependency involving " + driver + ", and circular dependencies are disabled.");
+            boundCycleChecked.add(driver);
+        }
+        return plan;
+    }
 
-        List<Object> builder = new ArrayList<>();
-        for (Class<?> argType : constructor.getParameterTypes()) {
-            checkState(argType != driver && check(argType), "Found a circular dependency involving " + driver + ", and circular dependencies are disabled.");
+    private <T> T newInstance(ConstructionPlan<T> plan)
+            throws Exception
+    {
+        final Class<?>[] parameterTypes = plan.getParameterTypes();
 
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> argType = parameterTypes[i];
             Object value = getInstance(argType);
             checkState(value != null, String.format("Could not find a suitable constructor in [%s]. Classes must have either one (and only one) constructor annotated with @Autowired or a constructor that is not private(and only one).", argType));
-            builder.add(value);
+            args[i] = value;
         }
 
-        T instance = constructor.newInstance(builder.toArray());
-        return buildAnnotationFields(driver, instance);
+        T instance = plan.newInstance(args, generateBeanCreator);
+        return buildAnnotationFields(plan, instance);
     }
 
-    private <T> T buildAnnotationFields(Class<T> driver, T instance)
+    private <T> T buildAnnotationFields(ConstructionPlan<T> plan, T instance)
             throws IllegalAccessException
     {
-        for (Field field : driver.getDeclaredFields()) {
-            Autowired autowired = field.getAnnotation(Autowired.class);
-            if (autowired != null) {
-                field.setAccessible(true);
-                if (field.getType() == driver) {
-                    field.set(instance, instance);
-                }
-                else {
-                    field.set(instance, getInstance(field.getType()));
-                }
-            }
+        Class<?>[] fieldTypes = plan.getFieldTypes();
+        for (int i = 0; i < fieldTypes.length; i++) {
+            Class<?> type = fieldTypes[i];
+            Object value = type == plan.getDriver() ? instance : getInstance(type);
+            plan.setField(instance, i, value, generateBeanCreator);
         }
         return instance;
     }
-
-    @SuppressWarnings("unchecked")
-    private static <T> Constructor<T> selectConstructor(Class<T> driver)
-    {
-        Constructor<T>[] constructors;
-        if (Creator.class.isAssignableFrom(driver)) {
-            constructors = (Constructor<T>[]) driver.getDeclaredConstructors();
-        }
-        else {
-            if (driver.isInterface() || Modifier.isAbstract(driver.getModifiers())) {
-                throw new IllegalStateException(driver + " cannot be instantiated, No binding entity class");
-            }
-            constructors = (Constructor<T>[]) driver.getConstructors(); //public
-        }
-
-        Constructor<T> noParameter = null;
-        for (Constructor<T> constructor : constructors) {
-            Autowired autowired = constructor.getAnnotation(Autowired.class);
-            if (autowired != null) {
-                return constructor;
-            }
-            if (constructor.getParameterCount() == 0) {
-                //find 'no parameter' Constructor, using class.newInstance()";
-                noParameter = constructor;
-            }
-        }
-
-        if (noParameter != null) {
-            return noParameter;
-        }
-
-        checkState(constructors.length == 1, String.format("%s has multiple public constructors, please ensure that there is only one", driver));
-        return constructors[0];
-    }
 }
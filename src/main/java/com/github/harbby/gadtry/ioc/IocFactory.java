@@ -19,6 +19,10 @@ import com.github.harbby.gadtry.function.Creator;
 import com.github.harbby.gadtry.function.exception.Function;
 import com.github.harbby.gadtry.graph.Graph;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
 /**
  * harbby ioc
  */
@@ -50,6 +54,27 @@ public interface IocFactory
 
     Graph<Void, Void> analysis();
 
+    /**
+     * 提前创建所有singleton bean.
+     * 默认实现忽略executor, 在当前线程中依次创建; {@link IocFactoryImpl}按构造依赖的拓扑顺序调度, 互不依赖的bean在executor中并行创建
+     *
+     * @param executor 创建bean的线程池
+     * @return 每个bean的构造耗时(纳秒), 按完成顺序排列
+     * @throws InjectorException Injector error
+     */
+    public default Map<Class<?>, Long> initSingletons(Executor executor)
+    {
+        Map<Class<?>, Long> report = new LinkedHashMap<>();
+        getAllBeans().getAllBeans().forEach((key, creator) -> {
+            if (creator instanceof SingletonCreator) {
+                long startTime = System.nanoTime();
+                creator.get();
+                report.put(key, System.nanoTime() - startTime);
+            }
+        });
+        return report;
+    }
+
     public static IocFactory create(Bean... beans)
     {
         BindMapping bindMapping = BindMapping.create(beans);
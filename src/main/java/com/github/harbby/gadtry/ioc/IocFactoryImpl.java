@@ -21,19 +21,63 @@ import com.github.harbby.gadtry.graph.Graph;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static com.github.harbby.gadtry.base.Throwables.throwsThrowable;
+import static java.util.Objects.requireNonNull;
 
 public class IocFactoryImpl
         implements IocFactory
 {
     private final BindMapping binds;
     private final Bean[] beans;
+    private final boolean generateBeanCreator;
+    private final StartupProfiler profiler;
+    private final InternalContext defaultContext;  //InternalContext无状态, 没有userCreator时共享同一个
 
     public IocFactoryImpl(BindMapping binds, Bean[] beans)
+    {
+        this(binds, beans, false);
+    }
+
+    public IocFactoryImpl(BindMapping binds, Bean[] beans, boolean generateBeanCreator)
+    {
+        this(binds, beans, generateBeanCreator, null);
+    }
+
+    /**
+     * @param profiler 记录未绑定bean的构造耗时, 应与BindMapping.create使用同一个, null表示不记录
+     */
+    public IocFactoryImpl(BindMapping binds, Bean[] beans, boolean generateBeanCreator, StartupProfiler profiler)
     {
         this.binds = binds;
         this.beans = beans;
+        this.generateBeanCreator = generateBeanCreator;
+        this.profiler = profiler;
+        this.defaultContext = InternalContext.of(binds, driverClass -> null, generateBeanCreator, profiler);
+    }
+
+    @Override
+    public <T> T getInstance(Class<T> driver)
+    {
+        Creator<T> creator = binds.get(driver);
+        if (creator != null) {
+            return creator.get();
+        }
+        return defaultContext.get(driver);
     }
 
     /**
@@ -41,13 +85,18 @@ public class IocFactoryImpl
      */
     public <T> T getInstance(Class<T> driver, Function<Class<?>, ?> userCreator)
     {
-        return InternalContext.of(binds, userCreator).get(driver);
+        Creator<T> creator = binds.get(driver);
+        if (creator != null) {
+            //已绑定的bean由BindMapping自己的context创建, 无需新建InternalContext
+            return creator.get();
+        }
+        return InternalContext.of(binds, userCreator, generateBeanCreator, profiler).get(driver);
     }
 
     @Override
     public <T> Creator<T> getCreator(Class<T> driver)
     {
-        return () -> getInstance(driver, driverClass -> null);
+        return () -> getInstance(driver);
     }
 
     @Override
@@ -56,6 +105,173 @@ public class IocFactoryImpl
         return binds;
     }
 
+    @Override
+    public Map<Class<?>, Long> initSingletons(Executor executor)
+    {
+        requireNonNull(executor, "executor is null");
+        Set<Class<?>> singletons = new HashSet<>();
+        binds.getAllBeans().forEach((key, creator) -> {
+            if (creator instanceof SingletonCreator) {
+                singletons.add(key);
+            }
+        });
+        Map<Class<?>, Class<?>> targets = bindTargets();
+
+        Map<Class<?>, Long> report = Collections.synchronizedMap(new LinkedHashMap<>());
+        Map<Class<?>, CompletableFuture<Void>> futures = new HashMap<>();
+        for (Class<?> key : singletons) {
+            scheduleSingleton(key, targets, singletons, futures, new HashSet<>(), report, executor);
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        }
+        catch (CompletionException e) {
+            throw throwsThrowable(e.getCause());
+        }
+        return new LinkedHashMap<>(report);
+    }
+
+    private CompletableFuture<Void> scheduleSingleton(
+            Class<?> key,
+            Map<Class<?>, Class<?>> targets,
+            Set<Class<?>> singletons,
+            Map<Class<?>, CompletableFuture<Void>> futures,
+            Set<Class<?>> scheduling,
+            Map<Class<?>, Long> report,
+            Executor executor)
+    {
+        CompletableFuture<Void> future = futures.get(key);
+        if (future != null) {
+            return future;
+        }
+        scheduling.add(key);
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (Class<?> dependency : singletonDependencies(key, targets, singletons)) {
+            if (!scheduling.contains(dependency)) {  //循环依赖在创建时由InternalContext检查, 这里只跳过
+                dependencies.add(scheduleSingleton(dependency, targets, singletons, futures, scheduling, report, executor));
+            }
+        }
+        scheduling.remove(key);
+
+        Creator<?> creator = binds.get(key);
+        future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                .thenRunAsync(() -> {
+                    long startTime = System.nanoTime();
+                    creator.get();
+                    report.put(key, System.nanoTime() - startTime);
+                }, executor);
+        futures.put(key, future);
+        return future;
+    }
+
+    /**
+     * 查找key直接或经过非singleton bean间接依赖的singleton.
+     * 依赖关系来自{@link ConstructionPlan}, 与实际创建时使用的构造器参数和@Autowired字段一致
+     */
+    private static List<Class<?>> singletonDependencies(Class<?> key, Map<Class<?>, Class<?>> targets, Set<Class<?>> singletons)
+    {
+        List<Class<?>> dependencies = new ArrayList<>();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> stack = new ArrayDeque<>();
+        stack.push(key);
+        visited.add(key);
+        while (!stack.isEmpty()) {
+            Class<?> type = stack.pop();
+            //已绑定的类型按绑定的实现class分析, byInstance和creator实例绑定没有构造依赖
+            Class<?> target = targets.containsKey(type) ? targets.get(type) : type;
+            ConstructionPlan<?> plan = target == null ? null : ConstructionPlan.tryOf(target);
+            if (plan == null) {
+                continue;
+            }
+            List<Class<?>> types = new ArrayList<>(Arrays.asList(plan.getParameterTypes()));
+            types.addAll(Arrays.asList(plan.getFieldTypes()));
+            for (Class<?> dependency : types) {
+                if (!visited.add(dependency)) {
+                    continue;
+                }
+                if (singletons.contains(dependency)) {
+                    dependencies.add(dependency);
+                }
+                else {
+                    stack.push(dependency);
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return 绑定的key -&gt; IocFactory实际构造的class, byInstance和creator实例绑定为null
+     */
+    private Map<Class<?>, Class<?>> bindTargets()
+    {
+        Map<Class<?>, Class<?>> targets = new HashMap<>();
+        Binder binder = new Binder()
+        {
+            @Override
+            public <T> void bind(Class<T> key, T instance)
+            {
+                targets.put(key, null);
+            }
+
+            @Override
+            public <T> BinderBuilder<T> bind(Class<T> key)
+            {
+                return new BinderBuilder<T>()
+                {
+                    @Override
+                    public void withSingle()
+                    {
+                        withScope(BeanScope.SINGLETON);
+                    }
+
+                    @Override
+                    public void withScope(BeanScope scope)
+                    {
+                        targets.put(key, key);
+                    }
+
+                    @Override
+                    public void noScope()
+                    {
+                        targets.put(key, key);
+                    }
+
+                    @Override
+                    public Scope by(Class<? extends T> createClass)
+                    {
+                        targets.put(key, createClass);
+                        return (ScopeSetter) scope -> {};
+                    }
+
+                    @Override
+                    public void byInstance(T instance)
+                    {
+                        targets.put(key, null);
+                    }
+
+                    @Override
+                    public Scope byCreator(Creator<? extends T> creator)
+                    {
+                        targets.put(key, null);
+                        return (ScopeSetter) scope -> {};
+                    }
+
+                    @Override
+                    public Scope byCreator(Class<? extends Creator<T>> creatorClass)
+                    {
+                        targets.put(key, creatorClass);
+                        return (ScopeSetter) scope -> {};
+                    }
+                };
+            }
+        };
+        for (Bean bean : beans) {
+            bean.configure(binder);
+        }
+        return targets;
+    }
+
     @Override
     public Graph<Void, Void> analysis()
     {
@@ -73,6 +289,12 @@ public class IocFactoryImpl
                 {
                     @Override
                     public void withSingle()
+                    {
+                        withScope(BeanScope.SINGLETON);
+                    }
+
+                    @Override
+                    public void withScope(BeanScope scope)
                     {
                         parserDep(key, key);
                     }
@@ -87,7 +309,7 @@ public class IocFactoryImpl
                     public Scope by(Class<? extends T> createClass)
                     {
                         parserDep(key, createClass);
-                        return () -> {};
+                        return (ScopeSetter) scope -> {};
                     }
 
                     @Override
@@ -96,14 +318,14 @@ public class IocFactoryImpl
                     @Override
                     public Scope byCreator(Creator<? extends T> creator)
                     {
-                        return () -> {};
+                        return (ScopeSetter) scope -> {};
                     }
 
                     @Override
                     public Scope byCreator(Class<? extends Creator<T>> creatorClass)
                     {
                         parserDep(key, creatorClass);
-                        return () -> {};
+                        return (ScopeSetter) scope -> {};
                     }
                 };
             }
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.function.Creator;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.harbby.gadtry.base.MoreObjects.checkArgument;
+import static com.github.harbby.gadtry.base.MoreObjects.checkState;
+import static com.github.harbby.gadtry.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * 有界对象池scope, 每次绑定(每个IocFactory的每个key)一个池, 同一个PoolScope可以用于多个IocFactory.
+ * get时借出池中空闲的实例, 没有空闲实例时创建新实例; 使用完毕后通过{@link #release(Class, Object)}归还,
+ * 池中空闲实例已达上限时归还的实例会被丢弃.
+ * 借出未归还的实例数达到maxTotal时get抛出{@link IllegalStateException}, 不会阻塞等待;
+ * 只能归还从本PoolScope借出且尚未归还的实例, 没有归还的实例一直计入maxTotal.
+ * <pre>
+ * PoolScope pool = PoolScope.create(16);
+ * IocFactory iocFactory = IocFactory.create(binder -&gt; binder.bind(Parser.class).withScope(pool));
+ * Parser parser = iocFactory.getInstance(Parser.class);
+ * try { ... } finally { pool.release(Parser.class, parser); }
+ * </pre>
+ */
+public final class PoolScope
+        implements BeanScope
+{
+    private final int maxIdle;
+    private final int maxTotal;
+    private final ConcurrentMap<Class<?>, List<Pool<?>>> pools = new ConcurrentHashMap<>();
+    private final Map<Object, Pool<?>> borrowed = Collections.synchronizedMap(new IdentityHashMap<>());  //借出未归还的实例 -> 所属的池
+
+    private PoolScope(int maxIdle, int maxTotal)
+    {
+        this.maxIdle = maxIdle;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * 不限制借出的实例数
+     *
+     * @param maxIdle 每个池最多保留的空闲实例数
+     * @return pool scope
+     */
+    public static PoolScope create(int maxIdle)
+    {
+        return create(maxIdle, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxIdle 每个池最多保留的空闲实例数
+     * @param maxTotal 每个池最多同时借出的实例数
+     * @return pool scope
+     */
+    public static PoolScope create(int maxIdle, int maxTotal)
+    {
+        checkArgument(maxIdle > 0, "maxIdle must be > 0");
+        checkArgument(maxTotal >= maxIdle, "maxTotal must be >= maxIdle");
+        return new PoolScope(maxIdle, maxTotal);
+    }
+
+    @Override
+    public <T> Creator<T> scope(Class<T> key, Creator<T> unscoped)
+    {
+        Pool<T> pool = new Pool<>(this, key, unscoped);
+        pools.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(pool);
+        return pool;
+    }
+
+    /**
+     * 归还借出的实例
+     *
+     * @param key 绑定的key
+     * @param instance 借出的实例
+     * @param <T> bean type
+     * @throws IllegalStateException instance不是从本PoolScope通过key借出的, 或者已经归还
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void release(Class<T> key, T instance)
+    {
+        requireNonNull(instance, "instance is null");
+        Pool<T> pool = (Pool<T>) borrowed.get(instance);
+        checkState(pool != null, "instance is not borrowed from this PoolScope or already released");
+        checkArgument(pool.key == key, "instance is borrowed by " + pool.key + ", not " + key);
+        checkState(borrowed.remove(instance, pool), "instance already released");
+        pool.release(instance);
+    }
+
+    /**
+     * @param key 绑定的key
+     * @return 该key对应的所有池的统计信息之和
+     */
+    public Metrics getMetrics(Class<?> key)
+    {
+        List<Pool<?>> keyPools = pools.get(key);
+        checkState(keyPools != null, key + " is not bound by this PoolScope");
+        Metrics metrics = new Metrics(0, 0, 0, 0, 0, 0);
+        for (Pool<?> pool : keyPools) {
+            metrics = metrics.add(pool.metrics());
+        }
+        return metrics;
+    }
+
+    private static final class Pool<T>
+            implements Creator<T>
+    {
+        private static final long serialVersionUID = 0L;
+
+        private final PoolScope scope;
+        private final Class<T> key;
+        private final Creator<T> delegate;
+        private final Queue<T> idle;
+        private final AtomicInteger active = new AtomicInteger();  //借出未归还的实例数
+        private final LongAdder borrowed = new LongAdder();
+        private final LongAdder created = new LongAdder();
+        private final LongAdder returned = new LongAdder();
+        private final LongAdder discarded = new LongAdder();
+
+        private Pool(PoolScope scope, Class<T> key, Creator<T> delegate)
+        {
+            this.scope = scope;
+            this.key = key;
+            this.delegate = delegate;
+            this.idle = new ArrayBlockingQueue<>(scope.maxIdle);
+        }
+
+        @Override
+        public T get()
+        {
+            if (active.incrementAndGet() > scope.maxTotal) {
+                active.decrementAndGet();
+                throw new IllegalStateException("PoolScope exhausted, " + key + " has " + scope.maxTotal + " borrowed instances");
+            }
+            T instance = idle.poll();
+            if (instance == null) {
+                try {
+                    instance = delegate.get();
+                }
+                catch (Throwable e) {
+                    active.decrementAndGet();
+                    throw e;
+                }
+                created.increment();
+            }
+            borrowed.increment();
+            scope.borrowed.put(instance, this);
+            return instance;
+        }
+
+        private void release(T instance)
+        {
+            active.decrementAndGet();
+            if (idle.offer(instance)) {
+                returned.increment();
+            }
+            else {
+                discarded.increment();
+            }
+        }
+
+        private Metrics metrics()
+        {
+            return new Metrics(borrowed.sum(), created.sum(), returned.sum(), discarded.sum(), idle.size(), active.get());
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Pool(" + delegate + ")";
+        }
+    }
+
+    /**
+     * 对象池统计信息快照.
+     * created接近borrowed说明池太小或者实例没有归还, discarded较多说明maxIdle可以调大
+     */
+    public static final class Metrics
+    {
+        private final long borrowed;
+        private final long created;
+        private final long returned;
+        private final long discarded;
+        private final int idle;
+        private final int active;
+
+        private Metrics(long borrowed, long created, long returned, long discarded, int idle, int active)
+        {
+            this.borrowed = borrowed;
+            this.created = created;
+            this.returned = returned;
+            this.discarded = discarded;
+            this.idle = idle;
+            this.active = active;
+        }
+
+        private Metrics add(Metrics other)
+        {
+            return new Metrics(borrowed + other.borrowed, created + other.created, returned + other.returned,
+                    discarded + other.discarded, idle + other.idle, active + other.active);
+        }
+
+        public long getBorrowed()
+        {
+            return borrowed;
+        }
+
+        public long getCreated()
+        {
+            return created;
+        }
+
+        public long getReturned()
+        {
+            return returned;
+        }
+
+        public long getDiscarded()
+        {
+            return discarded;
+        }
+
+        public int getIdle()
+        {
+            return idle;
+        }
+
+        /**
+         * @return 借出未归还的实例数
+         */
+        public int getActive()
+        {
+            return active;
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("borrowed", borrowed)
+                    .add("created", created)
+                    .add("returned", returned)
+                    .add("discarded", discarded)
+                    .add("idle", idle)
+                    .add("active", active)
+                    .toString();
+        }
+    }
+}
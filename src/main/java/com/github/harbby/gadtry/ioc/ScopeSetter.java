@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+/**
+ * 内部使用的Scope, 支持所有{@link BeanScope}, withSingle等价于withScope(BeanScope.SINGLETON)
+ */
+@FunctionalInterface
+interface ScopeSetter
+        extends Binder.Scope
+{
+    @Override
+    public void withScope(BeanScope scope);
+
+    @Override
+    public default void withSingle()
+    {
+        withScope(BeanScope.SINGLETON);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.function.Creator;
+
+/**
+ * singleton holder, 创建完成后每次get只有一次volatile读.
+ * 只有第一次创建时加锁, 保证并发获取时只创建一个实例; 创建失败时下次get会重试
+ */
+final class SingletonCreator<T>
+        implements Creator<T>
+{
+    private static final Object UNINITIALIZED = new Object();
+    private static final long serialVersionUID = 0L;
+
+    private final Creator<T> delegate;
+    private transient volatile Object value = UNINITIALIZED;
+
+    private SingletonCreator(Creator<T> delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    static <T> Creator<T> of(Creator<T> delegate)
+    {
+        return delegate instanceof SingletonCreator ? delegate : new SingletonCreator<>(delegate);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get()
+    {
+        Object current = value;
+        if (current != UNINITIALIZED) {
+            return (T) current;
+        }
+        synchronized (this) {
+            current = value;
+            if (current == UNINITIALIZED) {
+                current = delegate.get();
+                value = current;
+            }
+            return (T) current;
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new SingletonCreator<>(delegate);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Singleton(" + delegate + ")";
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static com.github.harbby.gadtry.base.MoreObjects.toStringHelper;
+
+/**
+ * IocFactory启动耗时分析.
+ * 记录每个bean的构造耗时, 反射分析耗时和aop代理生成耗时, 以及构造时的依赖关系,
+ * 可以导出为JSON或者flame graph使用的folded stacks格式.
+ * <p>
+ * 通过{@link com.github.harbby.gadtry.GadTry.Builder#profiler(StartupProfiler)}开启, 未开启时没有任何开销
+ */
+public final class StartupProfiler
+{
+    private final ThreadLocal<Deque<Record>> stacks = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ThreadLocal<Record> lastEnded = new ThreadLocal<>();
+    private final List<Record> roots = Collections.synchronizedList(new ArrayList<>());
+
+    Record begin(Class<?> beanClass)
+    {
+        Record record = new Record(beanClass);
+        Deque<Record> stack = stacks.get();
+        Record parent = stack.peek();
+        if (parent == null) {
+            roots.add(record);
+        }
+        else {
+            parent.dependencies.add(record);
+        }
+        stack.push(record);
+        lastEnded.remove();
+        record.startNanos = System.nanoTime();
+        return record;
+    }
+
+    void end(Record record)
+    {
+        record.totalNanos = System.nanoTime() - record.startNanos;
+        Deque<Record> stack = stacks.get();
+        stack.pop();
+        if (stack.isEmpty()) {
+            stacks.remove();
+        }
+        lastEnded.set(record);
+    }
+
+    /**
+     * 代理生成发生在bean构造完成之后, 计入刚刚构造完成的bean; 没有经过IocFactory构造的bean(byCreator)单独记录
+     */
+    void recordProxy(Class<?> key, long nanos)
+    {
+        Record record = lastEnded.get();
+        lastEnded.remove();
+        if (record == null) {
+            record = new Record(key);
+            Record parent = stacks.get().peek();
+            if (parent == null) {
+                stacks.remove();
+                roots.add(record);
+            }
+            else {
+                parent.dependencies.add(record);
+            }
+        }
+        record.proxyNanos += nanos;
+    }
+
+    IocFactory.ReplaceHandler wrap(IocFactory.ReplaceHandler handler)
+    {
+        return new IocFactory.ReplaceHandler()
+        {
+            @Override
+            public <T> T replace(Class<T> key, T instance)
+            {
+                long start = System.nanoTime();
+                T proxy = handler.replace(key, instance);
+                recordProxy(key, System.nanoTime() - start);
+                return proxy;
+            }
+        };
+    }
+
+    /**
+     * @return 顶层构造的bean, 其余bean位于{@link Record#getDependencies()}中
+     */
+    public List<Record> getRecords()
+    {
+        synchronized (roots) {
+            return new ArrayList<>(roots);
+        }
+    }
+
+    /**
+     * 从顶层bean开始, 每一层选择耗时最长的依赖, 得到决定启动耗时的依赖链
+     */
+    public List<Record> getCriticalPath()
+    {
+        List<Record> path = new ArrayList<>();
+        List<Record> candidates = getRecords();
+        while (!candidates.isEmpty()) {
+            Record slowest = candidates.get(0);
+            for (Record record : candidates) {
+                if (record.getInclusiveNanos() > slowest.getInclusiveNanos()) {
+                    slowest = record;
+                }
+            }
+            path.add(slowest);
+            candidates = slowest.getDependencies();
+        }
+        return path;
+    }
+
+    public void writeJson(Appendable out)
+            throws IOException
+    {
+        List<Record> records = getRecords();
+        long totalNanos = 0;
+        for (Record record : records) {
+            totalNanos += record.getInclusiveNanos();
+        }
+        out.append("{\"totalNanos\":").append(String.valueOf(totalNanos)).append(",\"beans\":[");
+        writeJson(out, records, true);
+        out.append("],\"criticalPath\":[");
+        writeJson(out, getCriticalPath(), false);
+        out.append("]}");
+    }
+
+    private static void writeJson(Appendable out, List<Record> records, boolean withDependencies)
+            throws IOException
+    {
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"class\":\"").append(jsonEscape(record.beanClass.getName()))
+                    .append("\",\"totalNanos\":").append(String.valueOf(record.totalNanos))
+                    .append(",\"selfNanos\":").append(String.valueOf(record.getSelfNanos()))
+                    .append(",\"reflectionNanos\":").append(String.valueOf(record.reflectionNanos))
+                    .append(",\"proxyNanos\":").append(String.valueOf(record.proxyNanos));
+            if (withDependencies) {
+                out.append(",\"dependencies\":[");
+                writeJson(out, record.getDependencies(), true);
+                out.append(']');
+            }
+            out.append('}');
+        }
+    }
+
+    /**
+     * folded stacks格式, 每行为 {@code frame1;frame2;frame3 nanos}, 可以直接交给flamegraph.pl等工具生成火焰图.
+     * 反射分析和代理生成分别以[reflection]和[proxy]子帧表示
+     */
+    public void writeFolded(Appendable out)
+            throws IOException
+    {
+        Deque<Object[]> stack = new ArrayDeque<>();  //(record, prefix)
+        List<Record> records = getRecords();
+        for (int i = records.size() - 1; i >= 0; i--) {
+            stack.push(new Object[] {records.get(i), ""});
+        }
+        while (!stack.isEmpty()) {
+            Object[] item = stack.pop();
+            Record record = (Record) item[0];
+            String frames = item[1] + record.beanClass.getName();
+            writeFoldedLine(out, frames, record.getSelfNanos() - record.reflectionNanos);
+            writeFoldedLine(out, frames + ";[reflection]", record.reflectionNanos);
+            writeFoldedLine(out, frames + ";[proxy]", record.proxyNanos);
+            List<Record> dependencies = record.getDependencies();
+            for (int i = dependencies.size() - 1; i >= 0; i--) {
+                stack.push(new Object[] {dependencies.get(i), frames + ";"});
+            }
+        }
+    }
+
+    private static void writeFoldedLine(Appendable out, String frames, long nanos)
+            throws IOException
+    {
+        if (nanos > 0) {
+            out.append(frames).append(' ').append(String.valueOf(nanos)).append('\n');
+        }
+    }
+
+    private static String jsonEscape(String value)
+    {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 一次bean构造的耗时记录, 构造期间只由构造线程写入
+     */
+    public static final class Record
+    {
+        private final Class<?> beanClass;
+        private final List<Record> dependencies = Collections.synchronizedList(new ArrayList<>());
+
+        private long startNanos;
+        private volatile long totalNanos;
+        private volatile long reflectionNanos;
+        private volatile long proxyNanos;
+
+        private Record(Class<?> beanClass)
+        {
+            this.beanClass = beanClass;
+        }
+
+        void setReflectionNanos(long reflectionNanos)
+        {
+            this.reflectionNanos = reflectionNanos;
+        }
+
+        public Class<?> getBeanClass()
+        {
+            return beanClass;
+        }
+
+        /**
+         * 包含依赖的构造耗时, 不包含代理生成
+         */
+        public long getTotalNanos()
+        {
+            return totalNanos;
+        }
+
+        /**
+         * 不包含依赖的构造耗时
+         */
+        public long getSelfNanos()
+        {
+            long self = totalNanos;
+            for (Record dependency : getDependencies()) {
+                self -= dependency.getInclusiveNanos();
+            }
+            return Math.max(self, 0);
+        }
+
+        public long getReflectionNanos()
+        {
+            return reflectionNanos;
+        }
+
+        public long getProxyNanos()
+        {
+            return proxyNanos;
+        }
+
+        public long getInclusiveNanos()
+        {
+            return totalNanos + proxyNanos;
+        }
+
+        public List<Record> getDependencies()
+        {
+            synchronized (dependencies) {
+                return new ArrayList<>(dependencies);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("beanClass", beanClass)
+                    .add("totalNanos", totalNanos)
+                    .add("selfNanos", getSelfNanos())
+                    .add("reflectionNanos", reflectionNanos)
+                    .add("proxyNanos", proxyNanos)
+                    .toString();
+        }
+    }
+}
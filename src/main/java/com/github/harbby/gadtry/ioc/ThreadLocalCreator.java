@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.function.Creator;
+
+/**
+ * 每个线程第一次get时创建实例, 之后同一线程一直返回该实例
+ */
+final class ThreadLocalCreator<T>
+        implements Creator<T>
+{
+    private static final long serialVersionUID = 0L;
+
+    private final Creator<T> delegate;
+    private final transient ThreadLocal<T> value;
+
+    ThreadLocalCreator(Creator<T> delegate)
+    {
+        this.delegate = delegate;
+        this.value = ThreadLocal.withInitial(delegate::get);
+    }
+
+    @Override
+    public T get()
+    {
+        return value.get();
+    }
+
+    private Object readResolve()
+    {
+        return new ThreadLocalCreator<>(delegate);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ThreadLocal(" + delegate + ")";
+    }
+}
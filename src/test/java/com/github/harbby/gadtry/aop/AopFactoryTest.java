@@ -15,6 +15,7 @@
  */
 package com.github.harbby.gadtry.aop;
 
+import com.github.harbby.gadtry.aop.impl.DirectProxy;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -24,6 +25,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
@@ -87,6 +89,215 @@ public class AopFactoryTest
         Assert.assertEquals(actions, Arrays.asList("before", "afterThrowing", "after"));
     }
 
+    @Test
+    public void afterThrowingRunsWhenTargetThrowsError()
+    {
+        List<String> actions = new ArrayList<>();
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("error")
+                    .classes(ErrorService.class)
+                    .whereMethod(method -> method.getName().equals("fail"))
+                    .build()
+                    .afterThrowing(methodInfo -> actions.add("afterThrowing"))
+                    .after(methodInfo -> actions.add("after"));
+        });
+        try {
+            aopFactory.proxy(ErrorService.class, new ErrorService()).fail();
+            Assert.fail();
+        }
+        catch (AssertionError e) {
+            Assert.assertEquals("error", e.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList("afterThrowing", "after"), actions);
+
+        actions.clear();
+        ErrorService proxy = AopFactory.directProxy(ErrorService.class)
+                .byInstance(new ErrorService())
+                .afterThrowing(methodInfo -> actions.add("afterThrowing"));
+        try {
+            proxy.fail();
+            Assert.fail();
+        }
+        catch (AssertionError e) {
+            Assert.assertEquals("error", e.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList("afterThrowing"), actions);
+    }
+
+    public static class ErrorService
+    {
+        public void fail()
+        {
+            throw new AssertionError("error");
+        }
+    }
+
+    @Test
+    public void multiplePointcutsFusedIntoOneProxy()
+    {
+        List<String> actions = new ArrayList<>();
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("first")
+                    .classes(AopFactoryTest.class)
+                    .whereMethod(method -> method.getName().equals("get"))
+                    .build()
+                    .around(proxyContext -> {
+                        actions.add("first");
+                        return proxyContext.proceed() + "-first";
+                    });
+            binder.bind("second")
+                    .classes(AopFactoryTest.class)
+                    .whereMethod(method -> method.getName().equals("get"))
+                    .build()
+                    .around(proxyContext -> {
+                        actions.add("second");
+                        return proxyContext.proceed() + "-second";
+                    });
+            binder.bind("third")
+                    .classes(AopFactoryTest.class)
+                    .whereMethod(method -> method.getName().equals("toString"))
+                    .build()
+                    .before(methodInfo -> actions.add("third"));
+        });
+
+        AopFactoryTest target = new AopFactoryTest();
+        AopFactoryTest aopTest = aopFactory.proxy(AopFactoryTest.class, target);
+        Assert.assertSame(target, ((DirectProxy) aopTest).getTarget());
+        Assert.assertEquals("hello-second-first", aopTest.get());
+        Assert.assertEquals(Arrays.asList("first", "second"), actions);
+
+        actions.clear();
+        aopTest.toString();
+        Assert.assertEquals(Arrays.asList("third"), actions);
+    }
+
+    @Test
+    public void asyncAdviceFiresOnFutureCompletion()
+    {
+        List<String> actions = new ArrayList<>();
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("async")
+                    .classes(AsyncService.class)
+                    .whereMethod(method -> method.getName().equals("call"))
+                    .build()
+                    .afterReturning(methodInfo -> actions.add("afterReturning"))
+                    .afterThrowing(methodInfo -> actions.add("afterThrowing"))
+                    .after(methodInfo -> actions.add("after"));
+        });
+        AsyncService service = new AsyncService();
+        AsyncService proxy = aopFactory.proxy(AsyncService.class, service);
+
+        CompletableFuture<String> future = proxy.call();
+        Assert.assertSame(service.future, future);
+        Assert.assertTrue(actions.isEmpty());
+        service.future.complete("done");
+        Assert.assertEquals(Arrays.asList("afterReturning", "after"), actions);
+
+        actions.clear();
+        service.future = new CompletableFuture<>();
+        proxy.call();
+        service.future.completeExceptionally(new IllegalStateException());
+        Assert.assertEquals(Arrays.asList("afterThrowing", "after"), actions);
+    }
+
+    @Test
+    public void asyncAfterReturningByInstance()
+    {
+        List<String> actions = new ArrayList<>();
+        AsyncService service = new AsyncService();
+        AsyncService proxy = AopFactory.proxy(AsyncService.class)
+                .byInstance(service)
+                .afterReturning(methodInfo -> actions.add(methodInfo.getName()));
+        proxy.call();
+        Assert.assertTrue(actions.isEmpty());
+        service.future.complete("done");
+        Assert.assertEquals(Arrays.asList("call"), actions);
+    }
+
+    @Test
+    public void asyncAdviceFailureReportedAndAfterStillRuns()
+    {
+        List<String> actions = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("async")
+                    .classes(AsyncService.class)
+                    .whereMethod(method -> method.getName().equals("call"))
+                    .build()
+                    .afterReturning(methodInfo -> {
+                        throw new IllegalStateException("afterReturning");
+                    })
+                    .after(methodInfo -> actions.add("after"));
+        });
+
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> errors.add(e));
+        try {
+            AsyncService service = new AsyncService();
+            aopFactory.proxy(AsyncService.class, service).call();
+            service.future.complete("done");
+            Assert.assertEquals(Arrays.asList("after"), actions);
+
+            service.future = new CompletableFuture<>();
+            AopFactory.proxy(AsyncService.class)
+                    .byInstance(service)
+                    .afterReturning(methodInfo -> {
+                        throw new IllegalStateException("byInstance");
+                    })
+                    .call();
+            service.future.complete("done");
+        }
+        finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        Assert.assertEquals(2, errors.size());
+        Assert.assertEquals("afterReturning", errors.get(0).getMessage());
+        Assert.assertEquals("byInstance", errors.get(1).getMessage());
+    }
+
+    public static class AsyncService
+    {
+        private CompletableFuture<String> future = new CompletableFuture<>();
+
+        public CompletableFuture<String> call()
+        {
+            return future;
+        }
+    }
+
+    @Test
+    public void fusedPointcutsFollowDeclarationOrder()
+    {
+        List<String> actions = new ArrayList<>();
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("instance")
+                    .classes(AopFactoryTest.class)
+                    .whereMethod(method -> method.getName().equals("get"))
+                    .build()
+                    .around(proxyContext -> {
+                        actions.add("instance");
+                        return proxyContext.proceed() + "-instance";
+                    });
+            binder.bind("driver")
+                    .classes(Supplier.class)
+                    .whereMethod(method -> method.getName().equals("get"))
+                    .build()
+                    .around(proxyContext -> {
+                        actions.add("driver");
+                        return proxyContext.proceed() + "-driver";
+                    });
+        });
+
+        for (int i = 0; i < 2; i++) {
+            actions.clear();
+            @SuppressWarnings("unchecked")
+            Supplier<String> proxy = aopFactory.proxy(Supplier.class, new AopFactoryTest());
+            Assert.assertEquals("hello-driver-instance", proxy.get());
+            Assert.assertEquals(Arrays.asList("instance", "driver"), actions);
+        }
+    }
+
     @Test
     public void aopAroundTest()
     {
@@ -15,11 +15,18 @@
  */
 package com.github.harbby.gadtry.aop.impl;
 
+import com.github.harbby.gadtry.aop.ProxyContext;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 public class JDKProxyTest
 {
@@ -55,6 +62,80 @@ public class JDKProxyTest
         Assert.assertEquals(2, set.size());
     }
 
+    @Test
+    public void aroundContextImmutableAndNestingSafe()
+    {
+        List<ProxyContext> contexts = new ArrayList<>();
+        List<Object> nestedArgs = new ArrayList<>();
+        Set<String> target = new HashSet<>();
+        AtomicReference<Set<String>> self = new AtomicReference<>();
+        Set<String> set = CutModeImpl.of(Set.class, target, JdkProxy::newProxyInstance)
+                .around(proxyContext -> {
+                    contexts.add(proxyContext);
+                    if (proxyContext.getInfo().getName().equals("add")) {
+                        self.get().contains("nested");
+                        nestedArgs.add(proxyContext.getArgs()[0]);
+                    }
+                    return proxyContext.proceed();
+                });
+        self.set(set);
+
+        set.add("a1");
+        set.add("a2");
+        Assert.assertEquals(Arrays.asList("a1", "a2"), nestedArgs);
+        //嵌套调用不会改写外层context
+        Assert.assertEquals(Arrays.asList("add", "contains", "add", "contains"),
+                contexts.stream().map(context -> context.getInfo().getName()).collect(Collectors.toList()));
+        Assert.assertEquals(2, target.size());
+    }
+
+    @Test
+    public void aroundContextProceedAfterAdviceReturn()
+            throws Exception
+    {
+        AtomicReference<ProxyContext> saved = new AtomicReference<>();
+        Set<String> target = new HashSet<>();
+        Set<String> set = CutModeImpl.of(Set.class, target, JdkProxy::newProxyInstance)
+                .around(proxyContext -> {
+                    saved.set(proxyContext);
+                    return proxyContext.proceed();
+                });
+        set.add("a1");
+        set.add("a2");
+
+        ProxyContext first = saved.get();
+        Assert.assertEquals("add", first.getInfo().getName());
+        Assert.assertArrayEquals(new Object[] {"a2"}, first.getArgs());
+        Assert.assertEquals(true, first.proceed(new Object[] {"a3"}));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a1", "a2", "a3")), target);
+    }
+
+    @Test
+    public void filterEvaluatedOncePerMethod()
+    {
+        AtomicInteger filterCount = new AtomicInteger();
+        AtomicInteger adviceCount = new AtomicInteger();
+        Set<String> target = new HashSet<>();
+        Proxy proxy = JdkProxy::newProxyInstance;
+        Set<String> set = proxy.getProxy(Set.class.getClassLoader(), Set.class,
+                (p, method, args) -> {
+                    adviceCount.incrementAndGet();
+                    return method.invoke(target, args);
+                },
+                target,
+                methodInfo -> {
+                    filterCount.incrementAndGet();
+                    return methodInfo.getName().equals("size");
+                });
+        for (int i = 0; i < 10; i++) {
+            set.add("a" + i);
+            set.size();
+        }
+        Assert.assertEquals(2, filterCount.get());
+        Assert.assertEquals(10, adviceCount.get());
+        Assert.assertEquals(10, target.size());
+    }
+
     @Test
     public void before()
     {
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.impl;
+
+import com.github.harbby.gadtry.aop.AopFactory;
+import com.github.harbby.gadtry.io.IOUtils;
+import com.github.harbby.gadtry.jvm.JVMLaunchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+public class JavassistDirectProxyTest
+{
+    @Test
+    public void onlyAdvisedMethodsCallHandler()
+    {
+        List<String> actions = new ArrayList<>();
+        Service proxy = AopFactory.directProxy(Service.class)
+                .byInstance(new Service())
+                .whereMethod(methodInfo -> methodInfo.getName().equals("add"))
+                .around(context -> {
+                    actions.add(context.getInfo().getName());
+                    return (int) context.proceed() * 10;
+                });
+
+        Assert.assertTrue(proxy instanceof DirectProxy);
+        Assert.assertEquals(30, proxy.add(1, 2));
+        Assert.assertEquals("protected", proxy.mode());
+        Assert.assertEquals("hello", proxy.hello());
+        Assert.assertEquals(Arrays.asList("add"), actions);
+    }
+
+    @Test
+    public void targetCalledWithoutReflection()
+    {
+        Service proxy = AopFactory.directProxy(Service.class)
+                .byInstance(new Service())
+                .whereMethod(methodInfo -> methodInfo.getName().equals("callStack"))
+                .before(methodInfo -> {});
+        Assert.assertFalse(isReflectCall(proxy.callStack()));
+
+        Service noAdvice = AopFactory.directProxy(Service.class)
+                .byInstance(new Service())
+                .whereMethod(methodInfo -> false)
+                .before(methodInfo -> Assert.fail());
+        Assert.assertFalse(isReflectCall(noAdvice.callStack()));
+    }
+
+    private static boolean isReflectCall(String callStack)
+    {
+        //junit本身通过反射调用测试方法, 只检查测试方法之上的调用栈
+        String stack = callStack.substring(0, callStack.indexOf("targetCalledWithoutReflection"));
+        return stack.contains("java.lang.reflect.Method.invoke");
+    }
+
+    @Test
+    public void targetExceptionNotWrapped()
+    {
+        List<String> actions = new ArrayList<>();
+        Service proxy = AopFactory.directProxy(Service.class)
+                .byInstance(new Service())
+                .whereMethod(methodInfo -> methodInfo.getName().equals("fail"))
+                .afterThrowing(methodInfo -> actions.add("afterThrowing"));
+        try {
+            proxy.fail();
+            Assert.fail();
+        }
+        catch (IOException e) {
+            Assert.assertEquals("fail", e.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList("afterThrowing"), actions);
+    }
+
+    @Test
+    public void proxyInterfaceAndCacheByAdvisedMethods()
+            throws Exception
+    {
+        Set<String> set = AopFactory.directProxy(Set.class)
+                .byInstance(new HashSet<>())
+                .whereMethod(methodInfo -> methodInfo.getName().equals("add"))
+                .afterReturning(methodInfo -> {});
+        set.add("a");
+        Assert.assertTrue(set.contains("a"));
+        Assert.assertEquals("[a]", set.toString());
+
+        ClassLoader loader = getClass().getClassLoader();
+        Class<?> addClass = JavassistDirectProxy.getProxyClass(loader, Set.class, methodInfo -> methodInfo.getName().equals("add"));
+        Assert.assertSame(addClass, JavassistDirectProxy.getProxyClass(loader, Set.class, methodInfo -> methodInfo.getName().equals("add")));
+        Assert.assertNotSame(addClass, JavassistDirectProxy.getProxyClass(loader, Set.class, methodInfo -> false));
+    }
+
+    @Test
+    public void delegateWideAndVoidMethods()
+    {
+        Service target = new Service();
+        Service proxy = AopFactory.directProxy(Service.class)
+                .byInstance(target)
+                .whereMethod(methodInfo -> false)
+                .before(methodInfo -> Assert.fail());
+        Assert.assertEquals(7.5D, proxy.scale(3L, 2.5D), 0D);
+        proxy.reset(4L);
+        Assert.assertEquals(4L, target.count);
+        Assert.assertEquals(target.hashCode(), proxy.hashCode());
+    }
+
+    @Test
+    public void aroundReadingInfoDoesNotAllocate()
+            throws Exception
+    {
+        //在新的JVM中测量, 避免其他测试污染JIT的类型profile导致advice无法内联
+        long bytes = JVMLaunchers.<Long>newJvm()
+                .setCallable(JavassistDirectProxyTest::measureAroundAllocatedBytes)
+                .setXms("64m")
+                .setXmx("64m")
+                .setConsole(System.out::println)
+                .build()
+                .startAndGet();
+        Assert.assertTrue("allocated " + bytes + " bytes in 1000000 calls", bytes < 100_000);
+    }
+
+    /**
+     * @return JIT编译后1000000次无参around调用分配的字节数, 取多轮中的最小值
+     */
+    private static long measureAroundAllocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Service proxy = AopFactory.directProxy(Service.class)
+                .byInstance(new Service())
+                .whereMethod(methodInfo -> methodInfo.getName().equals("hello"))
+                .around(context -> {
+                    Assert.assertEquals("hello", context.getInfo().getName());
+                    return context.proceed();
+                });
+        long min = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 1_000_000; i++) {
+                proxy.hello();
+            }
+            min = Math.min(min, threadBean.getThreadAllocatedBytes(threadId) - start);
+        }
+        return min;
+    }
+
+    @Test
+    public void diskCacheReusedByAopFactory()
+            throws Exception
+    {
+        File cacheDir = Files.createTempDirectory("gadtry_direct_proxy_cache").toFile();
+        try {
+            JavassistProxy.setDiskCacheDir(cacheDir);
+            List<String> actions = new ArrayList<>();
+            Supplier<String> first = proxyIsolated(actions);
+            Assert.assertEquals("hello", first.get());
+            Assert.assertEquals(Arrays.asList("before"), actions);
+
+            File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".class"));
+            Assert.assertEquals(1, files.length);
+            Assert.assertEquals(first.getClass().getName() + ".class", files[0].getName());
+            Assert.assertTrue(first.getClass().getName().startsWith(CachedService.class.getName() + "$$JvstDirectProxy$"));
+            Assert.assertTrue(files[0].setLastModified(1000L));
+
+            //模拟下次启动: 新的ClassLoader直接加载缓存的class文件, 不会重新生成
+            actions.clear();
+            Supplier<String> second = proxyIsolated(actions);
+            Assert.assertNotSame(first.getClass(), second.getClass());
+            Assert.assertEquals(first.getClass().getName(), second.getClass().getName());
+            Assert.assertEquals(1000L, files[0].lastModified());
+            Assert.assertEquals("hello", second.get());
+            Assert.assertEquals(Arrays.asList("before"), actions);
+        }
+        finally {
+            JavassistProxy.setDiskCacheDir(null);
+            for (File file : cacheDir.listFiles()) {
+                file.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<String> proxyIsolated(List<String> actions)
+            throws Exception
+    {
+        Class<Object> serviceClass = (Class<Object>) new IsolatedLoader(CachedService.class).loadClass(CachedService.class.getName());
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("cache")
+                    .classes(serviceClass)
+                    .whereMethod(methodInfo -> methodInfo.getName().equals("get"))
+                    .build()
+                    .before(methodInfo -> actions.add("before"));
+        });
+        return (Supplier<String>) aopFactory.proxy(serviceClass, serviceClass.newInstance());
+    }
+
+    /**
+     * 自己定义isolated class, 其余class委托给父ClassLoader
+     */
+    private static class IsolatedLoader
+            extends ClassLoader
+    {
+        private final String isolated;
+
+        private IsolatedLoader(Class<?> isolated)
+        {
+            super(isolated.getClassLoader());
+            this.isolated = isolated.getName();
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException
+        {
+            if (!name.equals(isolated)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> aClass = findLoadedClass(name);
+                if (aClass != null) {
+                    return aClass;
+                }
+                try (InputStream in = getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    IOUtils.copyBytes(in, out, 4096);
+                    byte[] bytes = out.toByteArray();
+                    return defineClass(name, bytes, 0, bytes.length);
+                }
+                catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    public static class CachedService
+            implements Supplier<String>
+    {
+        @Override
+        public String get()
+        {
+            return "hello";
+        }
+    }
+
+    public static class Service
+    {
+        private long count;
+
+        public double scale(long a, double b)
+        {
+            return a * b;
+        }
+
+        public void reset(long count)
+        {
+            this.count = count;
+        }
+
+        public int add(int a, int b)
+        {
+            return a + b;
+        }
+
+        String mode()
+        {
+            return "protected";
+        }
+
+        public String hello()
+        {
+            return "hello";
+        }
+
+        public String callStack()
+        {
+            return Arrays.toString(new Throwable().getStackTrace());
+        }
+
+        public void fail()
+                throws IOException
+        {
+            throw new IOException("fail");
+        }
+    }
+}
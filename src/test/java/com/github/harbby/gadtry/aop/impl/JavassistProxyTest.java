@@ -24,13 +24,19 @@ import sun.misc.Unsafe;
 
 import java.io.File;
 import java.lang.reflect.InvocationHandler;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class JavassistProxyTest
@@ -119,4 +125,102 @@ public class JavassistProxyTest
                     }
                 });
     }
+
+    @Test
+    public void sameSimpleNameNotConflict()
+            throws Exception
+    {
+        Class<?> a = JavassistProxy.getProxyClass(null, JavassistDirectProxyTest.Service.class);
+        Class<?> b = JavassistProxy.getProxyClass(null, Service.class);
+        Assert.assertNotEquals(a.getName(), b.getName());
+        Assert.assertTrue(JavassistDirectProxyTest.Service.class.isAssignableFrom(a));
+        Assert.assertTrue(Service.class.isAssignableFrom(b));
+    }
+
+    @Test
+    public void concurrentGetProxyClassReturnsSameClass()
+    {
+        Set<Class<?>> classes = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 64).parallel().forEach(i -> {
+            try {
+                classes.add(JavassistProxy.getProxyClass(null, Comparable.class));
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assert.assertEquals(1, classes.size());
+    }
+
+    @Test
+    public void batchProxyClassesWithPrimitiveMethods()
+            throws Exception
+    {
+        Map<Class<?>, Class<?>> classes = JavassistProxy.getProxyClasses(null, Arrays.asList(Service.class, Comparable.class));
+        Assert.assertEquals(2, classes.size());
+        Assert.assertSame(classes.get(Comparable.class), JavassistProxy.getProxyClass(null, Comparable.class));
+
+        List<String> calls = new ArrayList<>();
+        Service service = new Service();
+        Service proxy = JavassistProxy.newProxyInstance(null, Service.class, (p, method, args) -> {
+            calls.add(method.getName() + Arrays.toString(args));
+            return method.invoke(service, args);
+        });
+        Assert.assertSame(classes.get(Service.class), proxy.getClass());
+        Assert.assertEquals(6L, proxy.sum(1, 2L, 3.0D));
+        proxy.run(true, 'c');
+        Assert.assertEquals("a", proxy.name(new String[] {"a"}));
+        Assert.assertEquals(3, calls.size());
+        Assert.assertEquals(Arrays.asList("sum[1, 2, 3.0]", "run[true, c]"), calls.subList(0, 2));
+    }
+
+    @Test
+    public void diskCacheReusedAcrossLoaders()
+            throws Exception
+    {
+        File cacheDir = Files.createTempDirectory("gadtry_proxy_cache").toFile();
+        try {
+            JavassistProxy.setDiskCacheDir(cacheDir);
+            Class<?> first = JavassistProxy.getProxyClass(new ClassLoader(getClass().getClassLoader()) {}, Service.class);
+            File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".class"));
+            Assert.assertEquals(1, files.length);
+            Assert.assertEquals(first.getName() + ".class", files[0].getName());
+            Assert.assertTrue(files[0].setLastModified(1000L));
+
+            //新的ClassLoader直接加载缓存的class文件, 不会重新生成
+            ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {};
+            Class<?> second = JavassistProxy.getProxyClass(loader, Service.class);
+            Assert.assertNotSame(first, second);
+            Assert.assertSame(loader, second.getClassLoader());
+            Assert.assertEquals(first.getName(), second.getName());
+            Assert.assertEquals(1000L, files[0].lastModified());
+
+            Service proxy = JavassistProxy.newProxyInstance(loader, Service.class, (p, method, args) -> 7L);
+            Assert.assertEquals(7L, proxy.sum(1, 2, 3));
+        }
+        finally {
+            JavassistProxy.setDiskCacheDir(null);
+            for (File file : cacheDir.listFiles()) {
+                file.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    public static class Service
+    {
+        public long sum(int a, long b, double c)
+        {
+            return (long) (a + b + c);
+        }
+
+        public void run(boolean flag, char c)
+        {
+        }
+
+        public String name(String[] names)
+        {
+            return names[0];
+        }
+    }
 }
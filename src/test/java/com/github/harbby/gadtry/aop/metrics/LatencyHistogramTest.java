@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void bucketBoundsContainValue()
+    {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 100, 1_000, 123_456, 10_000_000, 1L << 39, (1L << 40) - 1};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            Assert.assertTrue(index == 0 || value > LatencyHistogram.bucketUpperBound(index - 1));
+            Assert.assertTrue(LatencyHistogram.bucketUpperBound(index) - value <= value / 8);
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void bucketIndexMonotonic()
+    {
+        int last = 0;
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(index == last || index == last + 1);
+            last = index;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.metrics;
+
+import com.github.harbby.gadtry.aop.AopFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class MetricsAspectTest
+{
+    @Test
+    public void recordCountErrorsAndLatency()
+            throws IOException
+    {
+        MetricsAspect metrics = new MetricsAspect();
+        AopFactory aopFactory = AopFactory.create(binder -> {
+            binder.bind("metrics")
+                    .classes(Service.class)
+                    .methodAnnotated(Deprecated.class)
+                    .build()
+                    .around(metrics);
+        });
+        Service service = aopFactory.proxy(Service.class, new Service());
+        for (int i = 0; i < 100; i++) {
+            service.sleep(i == 99 ? 5 : 0);
+            service.plain();
+        }
+        service.load(new Date(0));
+        service.load(new java.sql.Date(0));
+        service.load(new java.sql.Date(0));
+        try {
+            service.fail();
+            Assert.fail();
+        }
+        catch (IllegalStateException ignored) {
+        }
+
+        Map<String, MetricsAspect.Snapshot> snapshot = metrics.snapshot();
+        Assert.assertEquals(4, snapshot.size());
+        MetricsAspect.Snapshot sleep = snapshot.get(Service.class.getName() + ".sleep(long)");
+        Assert.assertEquals(100, sleep.getCount());
+        Assert.assertEquals(0, sleep.getErrors());
+        Assert.assertTrue(sleep.getMaxNanos() >= 5_000_000);
+        Assert.assertTrue(sleep.getPercentileNanos(50) < sleep.getPercentileNanos(100));
+        Assert.assertEquals(sleep.getMaxNanos(), sleep.getPercentileNanos(100));
+
+        MetricsAspect.Snapshot fail = snapshot.get(Service.class.getName() + ".fail()");
+        Assert.assertEquals(1, fail.getCount());
+        Assert.assertEquals(1, fail.getErrors());
+
+        //simple name相同的重载方法分别统计
+        Assert.assertEquals(1, snapshot.get(Service.class.getName() + ".load(java.util.Date)").getCount());
+        Assert.assertEquals(2, snapshot.get(Service.class.getName() + ".load(java.sql.Date)").getCount());
+
+        StringBuilder report = new StringBuilder();
+        metrics.report(report);
+        Assert.assertTrue(report.toString().contains(Service.class.getName() + ".sleep(long)"));
+    }
+
+    @Test
+    public void recordAsyncOnCompletion()
+    {
+        MetricsAspect metrics = new MetricsAspect();
+        Service service = new Service();
+        Service proxy = AopFactory.proxy(Service.class)
+                .byInstance(service)
+                .whereMethod(methodInfo -> methodInfo.getName().equals("async"))
+                .around(metrics);
+
+        proxy.async();
+        Assert.assertEquals(0, metrics.snapshot().values().iterator().next().getCount());
+        service.future.completeExceptionally(new IllegalStateException());
+        MetricsAspect.Snapshot snapshot = metrics.snapshot().values().iterator().next();
+        Assert.assertEquals(1, snapshot.getCount());
+        Assert.assertEquals(1, snapshot.getErrors());
+    }
+
+    public static class Service
+    {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        @Deprecated
+        public void sleep(long millis)
+        {
+            try {
+                Thread.sleep(millis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Deprecated
+        public void fail()
+        {
+            throw new IllegalStateException("fail");
+        }
+
+        @Deprecated
+        public void load(Date date)
+        {
+        }
+
+        @Deprecated
+        public void load(java.sql.Date date)
+        {
+        }
+
+        public void plain()
+        {
+        }
+
+        public CompletableFuture<String> async()
+        {
+            return future;
+        }
+    }
+}
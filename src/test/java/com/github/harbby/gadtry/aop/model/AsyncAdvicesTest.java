@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.aop.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+public class AsyncAdvicesTest
+{
+    @Test
+    public void asyncOnlyWhenDeclaredReturnTypeIsCompletionStage()
+    {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Assert.assertTrue(AsyncAdvices.isAsync(CompletionStage.class, future));
+        Assert.assertTrue(AsyncAdvices.isAsync(CompletableFuture.class, future));
+        Assert.assertFalse(AsyncAdvices.isAsync(Object.class, future));
+        Assert.assertFalse(AsyncAdvices.isAsync(CompletionStage.class, null));
+    }
+
+    @Test
+    public void applyAdviceReportsErrorToUncaughtExceptionHandler()
+            throws Exception
+    {
+        MethodInfo info = MethodInfo.of(Object.class.getMethod("toString"));
+        List<Throwable> errors = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> errors.add(e));
+        try {
+            AsyncAdvices.applyAdvice(null, info);
+            AsyncAdvices.applyAdvice(methodInfo -> {
+                throw new IllegalStateException(methodInfo.getName());
+            }, info);
+        }
+        finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        Assert.assertEquals(1, errors.size());
+        Assert.assertEquals("toString", errors.get(0).getMessage());
+    }
+}
@@ -46,6 +46,15 @@ public class MethodInfoTest
         this.methodInfo = MethodInfo.of(method);
     }
 
+    @Test
+    public void methodInfoCachedPerMethod()
+            throws NoSuchMethodException
+    {
+        Method copy = MethodInfoTest.class.getDeclaredMethod("getConnections", String.class, double.class);
+        Assert.assertNotSame(method, copy);
+        Assert.assertSame(methodInfo, MethodInfo.of(copy));
+    }
+
     @Test
     public void methodInfoGetNameTest()
     {
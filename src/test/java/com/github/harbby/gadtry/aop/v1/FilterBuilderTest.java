@@ -16,9 +16,11 @@
 package com.github.harbby.gadtry.aop.v1;
 
 import com.github.harbby.gadtry.aop.model.Pointcut;
+import com.github.harbby.gadtry.collection.mutable.MutableSet;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,4 +39,63 @@ public class FilterBuilderTest
         Set<Class<?>> classes = pointcut.getSearchClass();
         Assert.assertEquals(1, classes.size());
     }
+
+    @Test
+    public void classFileMatcherFollowsSuperclass()
+    {
+        ClassLoader loader = getClass().getClassLoader();
+        ClassFileMatcher matcher = new ClassFileMatcher(Collections.singleton(Deprecated.class.getName()));
+        Assert.assertTrue(matcher.mayHaveAnnotatedMethod(loader, Annotated.class.getName().replace('.', '/') + ".class"));
+        Assert.assertTrue(matcher.mayHaveAnnotatedMethod(loader, Child.class.getName().replace('.', '/') + ".class"));
+        Assert.assertFalse(matcher.mayHaveAnnotatedMethod(loader, Plain.class.getName().replace('.', '/') + ".class"));
+    }
+
+    @Test
+    public void parallelFilterMatchesSequential()
+    {
+        Pointcut sequential = new Pointcut("sequential");
+        new FilterBuilder(sequential)
+                .withPackage("com.github.harbby.gadtry")
+                .whereMethod(methodInfo -> methodInfo.getName().equals("close"))
+                .build();
+
+        Pointcut parallel = new Pointcut("parallel");
+        new FilterBuilder(parallel)
+                .withPackage("com.github.harbby.gadtry")
+                .whereMethod(methodInfo -> methodInfo.getName().equals("close"))
+                .parallel()
+                .build();
+
+        Assert.assertFalse(sequential.getSearchClass().isEmpty());
+        Assert.assertEquals(sequential.getSearchClass(), parallel.getSearchClass());
+    }
+
+    @Test
+    public void scanPackageWithMethodAnnotated()
+    {
+        Pointcut pointcut = new Pointcut("test");
+        new FilterBuilder(pointcut)
+                .withPackage("com.github.harbby.gadtry.aop.v1")
+                .methodAnnotated(Deprecated.class)
+                .build();
+
+        Assert.assertEquals(MutableSet.of(Annotated.class, Child.class), pointcut.getSearchClass());
+    }
+
+    public static class Annotated
+    {
+        @Deprecated
+        public void run() {}
+    }
+
+    public static class Child
+            extends Annotated
+    {
+    }
+
+    public static class Plain
+    {
+        @Deprecated
+        private void run() {}
+    }
 }
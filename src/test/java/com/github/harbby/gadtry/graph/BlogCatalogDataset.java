@@ -16,6 +16,11 @@
 package com.github.harbby.gadtry.graph;
 
 import com.github.harbby.gadtry.collection.mutable.MutableSet;
+import com.github.harbby.gadtry.graph.algorithm.AdjacencyGraph;
+import com.github.harbby.gadtry.graph.algorithm.ConnectedComponents;
+import com.github.harbby.gadtry.graph.algorithm.DegreeDistribution;
+import com.github.harbby.gadtry.graph.algorithm.PageRank;
+import com.github.harbby.gadtry.graph.algorithm.TriangleCount;
 import org.junit.Assert;
 import org.junit.Test;
 import sun.nio.cs.StreamDecoder;
@@ -29,6 +34,7 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -73,6 +79,35 @@ public class BlogCatalogDataset
         graph = graphBuilder.create();
     }
 
+    @Test
+    public void algorithmBenchmark()
+    {
+        long start = System.nanoTime();
+        AdjacencyGraph adjacency = AdjacencyGraph.of(graph);
+        System.out.printf("adjacency: nodes=%d edges=%d %dms%n", adjacency.getNodeCount(), adjacency.getEdgeCount(), (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        double[] rank = PageRank.run(adjacency, 0.85, 20, 1e-9);
+        System.out.printf("pageRank: %dms%n", (System.nanoTime() - start) / 1_000_000);
+        Assert.assertEquals(1.0, Arrays.stream(rank).sum(), 1e-6);
+
+        start = System.nanoTime();
+        int weak = ConnectedComponents.count(ConnectedComponents.weak(adjacency));
+        System.out.printf("weak components=%d %dms%n", weak, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        int strong = ConnectedComponents.count(ConnectedComponents.strong(adjacency));
+        System.out.printf("strong components=%d %dms%n", strong, (System.nanoTime() - start) / 1_000_000);
+        Assert.assertTrue(strong >= weak);
+
+        start = System.nanoTime();
+        long triangles = TriangleCount.count(adjacency);
+        System.out.printf("triangles=%d %dms%n", triangles, (System.nanoTime() - start) / 1_000_000);
+
+        DegreeDistribution distribution = DegreeDistribution.of(adjacency);
+        Assert.assertEquals(adjacency.getEdgeCount(), distribution.getMeanDegree() * adjacency.getNodeCount(), 1e-6);
+    }
+
     @Test
     public void searchBegien1GiveSizeMax2ReturnRoutes12548()
     {
@@ -20,6 +20,7 @@ import com.github.harbby.gadtry.graph.impl.NodeOperator;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -215,4 +216,50 @@ public class GraphxTest
         graph.printShow().forEach(System.out::println);
         Assert.assertEquals(6, db.get());
     }
+
+    @Test
+    public void nodeIndexAndFindNodeByIndex()
+            throws Exception
+    {
+        Graph<Integer, Void> indexGraph = Graph.<Integer, Void>builder()
+                .addNode("a1", 1)
+                .addNode("a2", 2)
+                .addNode("a3", 3)
+                .addNode("a4", 4)
+                .addNode("a5")
+                .addEdge("a1", "a2")
+                .addEdge("a2", "a3")
+                .addIndex("parity", data -> data % 2)
+                .create();
+
+        Assert.assertEquals(5, indexGraph.getNodeCount());
+        for (int i = 0; i < indexGraph.getNodeCount(); i++) {
+            Node<Integer, Void> node = indexGraph.getNode(i);
+            Assert.assertEquals(i, node.getIndex());
+            Assert.assertSame(node, indexGraph.getNode(node.getId()));
+        }
+        Assert.assertEquals("a1", indexGraph.getNode(0).getId());
+        try {
+            indexGraph.getNode(5);
+            Assert.fail();
+        }
+        catch (IndexOutOfBoundsException e) {
+            Assert.assertEquals("NO SUCH Node index 5", e.getMessage());
+        }
+        Assert.assertSame(indexGraph.getNode("a2"), indexGraph.getNode("a1").getNextNode("a2").get().getOutNode());
+
+        List<String> odd = indexGraph.findNode("parity", 1).stream().map(Node::getId).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("a1", "a3"), odd);
+        Assert.assertTrue(indexGraph.findNode("parity", 5).isEmpty());
+        try {
+            indexGraph.findNode("noIndex", 1);
+            Assert.fail();
+        }
+        catch (NullPointerException e) {
+            Assert.assertEquals("NO SUCH Index noIndex", e.getMessage());
+        }
+
+        Graph<Integer, Void> copy = Serializables.byteToObject(Serializables.serialize(indexGraph));
+        Assert.assertEquals(2, copy.findNode("parity", 0).size());
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class PathQueryTest
+{
+    /*
+     * user:u1 -follow-> user:u2 -follow-> user:u3 -follow-> user:u1
+     * user:u2 -like-> post:p1, user:u3 -like-> post:p1, user:u1 -like-> post:p2
+     */
+    private final Graph<String, String> graph = Graph.<String, String>builder()
+            .addNode("u1", "user")
+            .addNode("u2", "user")
+            .addNode("u3", "user")
+            .addNode("p1", "post")
+            .addNode("p2", "post")
+            .addEdge("u1", "u2", "follow")
+            .addEdge("u2", "u3", "follow")
+            .addEdge("u3", "u1", "follow")
+            .addEdge("u2", "p1", "like")
+            .addEdge("u3", "p1", "like")
+            .addEdge("u1", "p2", "like")
+            .addIndex("type", data -> data)
+            .create();
+
+    private static Set<String> toIds(List<Route<String, String>> routes)
+    {
+        return routes.stream().map(route -> String.join("-", route.getIds())).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void multiHopQuery()
+    {
+        PathQuery<String, String> query = PathQuery.<String, String>builder()
+                .nodeId("u1")
+                .edge(edge -> "follow".equals(edge.getData()), 1, 2)
+                .node(node -> "user".equals(node.getData()))
+                .edge(edge -> "like".equals(edge.getData()))
+                .node("type", "post")
+                .build();
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("u1-u2-p1", "u1-u2-u3-p1")), toIds(query.execute(graph)));
+
+        PathQuery.Plan plan = query.explain(graph);
+        Assert.assertEquals(SearchBuilder.Direction.FORWARD, plan.getDirection());
+        Assert.assertEquals(1, plan.getStartCandidates());
+        Assert.assertEquals(2, plan.getEndCandidates());
+    }
+
+    @Test
+    public void minHopsAndSimplePath()
+    {
+        List<Route<String, String>> routes = PathQuery.<String, String>builder()
+                .node("type", "user")
+                .edge(edge -> "follow".equals(edge.getData()), 2, Integer.MAX_VALUE)
+                .node(node -> true)
+                .build()
+                .execute(graph);
+        //每个user经过2跳follow到达另一个user, 环u1-u2-u3-u1不会被返回
+        Assert.assertEquals(new HashSet<>(Arrays.asList("u1-u2-u3", "u2-u3-u1", "u3-u1-u2")), toIds(routes));
+    }
+
+    @Test
+    public void maxRoutes()
+    {
+        List<Route<String, String>> routes = PathQuery.<String, String>builder()
+                .node("type", "user")
+                .edge(1, 3)
+                .node(node -> true)
+                .maxRoutes(2)
+                .build()
+                .execute(graph);
+        Assert.assertEquals(2, routes.size());
+    }
+
+    @Test
+    public void buildMustAlternateNodeAndEdge()
+    {
+        try {
+            PathQuery.<String, String>builder().node(node -> true).node(node -> true);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            Assert.assertEquals("node step must follow an edge step", e.getMessage());
+        }
+        try {
+            PathQuery.<String, String>builder().node(node -> true).edge(1, 2).build();
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            Assert.assertEquals("path query must end with a node step", e.getMessage());
+        }
+    }
+
+    @Test
+    public void backwardWhenEndIsMoreSelective()
+    {
+        Graph<String, String> indexed = Graph.<String, String>builder()
+                .addNode("u1", "user")
+                .addNode("u2", "user")
+                .addNode("u3", "user")
+                .addNode("p1", "post")
+                .addEdge("u1", "u2", "follow")
+                .addEdge("u2", "u3", "follow")
+                .addEdge("u2", "p1", "like")
+                .addEdge("u3", "p1", "like")
+                .withInEdgeIndex()
+                .create();
+        PathQuery<String, String> query = PathQuery.<String, String>builder()
+                .node(node -> "user".equals(node.getData()))
+                .edge(edge -> "follow".equals(edge.getData()), 1, 2)
+                .node(node -> true)
+                .edge(edge -> "like".equals(edge.getData()) && edge.getOutNode().getId().equals("p1"))
+                .nodeId("p1")
+                .build();
+
+        PathQuery.Plan plan = query.explain(indexed);
+        Assert.assertEquals(SearchBuilder.Direction.BACKWARD, plan.getDirection());
+        Assert.assertEquals(3, plan.getStartCandidates());
+        Assert.assertEquals(1, plan.getEndCandidates());
+
+        List<Route<String, String>> routes = query.execute(indexed);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("u1-u2-p1", "u1-u2-u3-p1", "u2-u3-p1")), toIds(routes));
+        for (Route<String, String> route : routes) {
+            Assert.assertEquals("p1", route.getLastNodeId());
+            Assert.assertEquals("p1", route.getLastEdge().getOutNode().getId());
+        }
+        //没有入边索引时结果相同, 但只能正向搜索
+        Assert.assertEquals(SearchBuilder.Direction.FORWARD, query.explain(graph).getDirection());
+    }
+}
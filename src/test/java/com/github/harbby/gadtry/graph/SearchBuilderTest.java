@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+public class SearchBuilderTest
+{
+    /*
+     * a1 -> a2 -> a3 -> a1, 不检查findDeadLoop时搜索永远不会结束
+     */
+    private final Graph<Void, Void> graph = Graph.<Void, Void>builder()
+            .addNode("a1")
+            .addNode("a2")
+            .addNode("a3")
+            .addEdge("a1", "a2")
+            .addEdge("a2", "a3")
+            .addEdge("a3", "a1")
+            .create();
+
+    private final SearchBuilder.Optimizer[] optimizers = SearchBuilder.Optimizer.values();
+
+    @Test
+    public void searchCompleted()
+    {
+        SearchResult<Void, Void> result = graph.search()
+                .beginNode("a1")
+                .nextRule(route -> !route.findDeadLoop())
+                .search();
+        Assert.assertEquals(SearchResult.StopReason.COMPLETED, result.getStopReason());
+        Assert.assertEquals(2, result.getRoutes().size());
+    }
+
+    @Test
+    public void maxDepth()
+    {
+        for (SearchBuilder.Optimizer optimizer : optimizers) {
+            SearchResult<Void, Void> result = graph.search()
+                    .optimizer(optimizer)
+                    .beginNode("a1")
+                    .nextRule(route -> true)
+                    .maxDepth(7)
+                    .search();
+            Assert.assertEquals(SearchResult.StopReason.COMPLETED, result.getStopReason());
+            Assert.assertEquals(7, result.getRoutes().size());
+            Assert.assertEquals(7, result.getFindNodeNumber());
+        }
+    }
+
+    @Test
+    public void maxRoutes()
+    {
+        for (SearchBuilder.Optimizer optimizer : optimizers) {
+            SearchResult<Void, Void> result = graph.search()
+                    .optimizer(optimizer)
+                    .beginNode("a1")
+                    .nextRule(route -> true)
+                    .maxRoutes(100)
+                    .search();
+            Assert.assertEquals(SearchResult.StopReason.MAX_ROUTES, result.getStopReason());
+            Assert.assertEquals(100, result.getRoutes().size());
+        }
+    }
+
+    @Test
+    public void maxRoutesCountsRoutesReachingEndNode()
+    {
+        for (SearchBuilder.Optimizer optimizer : optimizers) {
+            SearchResult<Void, Void> result = graph.search()
+                    .optimizer(optimizer)
+                    .beginNode("a1")
+                    .endNode("a3")
+                    .nextRule(route -> true)
+                    .maxRoutes(2)
+                    .search();
+            Assert.assertEquals(SearchResult.StopReason.MAX_ROUTES, result.getStopReason());
+            Assert.assertEquals(Arrays.asList(2, 5), result.getRoutes().stream().map(Route::size).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void maxVisitedNodes()
+    {
+        for (SearchBuilder.Optimizer optimizer : optimizers) {
+            SearchResult<Void, Void> result = graph.search()
+                    .optimizer(optimizer)
+                    .beginNode("a1")
+                    .nextRule(route -> route.size() % 2 == 0)  //a1的第一条route就不满足, 不会继续扩展
+                    .maxVisitedNodes(1)
+                    .search();
+            Assert.assertEquals(SearchResult.StopReason.MAX_VISITED_NODES, result.getStopReason());
+            Assert.assertEquals(1, result.getFindNodeNumber());
+        }
+    }
+
+    @Test
+    public void timeout()
+    {
+        SearchResult<Void, Void> result = graph.search()
+                .beginNode("a1")
+                .nextRule(route -> true)
+                .timeout(50, TimeUnit.MILLISECONDS)
+                .search();
+        Assert.assertEquals(SearchResult.StopReason.TIMEOUT, result.getStopReason());
+    }
+
+    @Test
+    public void cancel()
+    {
+        CancellationToken token = new CancellationToken();
+        SearchResult<Void, Void> result = graph.search()
+                .beginNode("a1")
+                .nextRule(route -> {
+                    if (route.size() == 1000) {
+                        token.cancel();
+                    }
+                    return true;
+                })
+                .cancellationToken(token)
+                .search();
+        Assert.assertEquals(SearchResult.StopReason.CANCELLED, result.getStopReason());
+        Assert.assertTrue(result.getFindNodeNumber() < 1000 + 256);
+    }
+
+    @Test
+    public void globalRuleStopReason()
+    {
+        SearchResult<Void, Void> result = graph.search()
+                .beginNode("a1")
+                .nextRule(route -> true)
+                .globalRule(context -> context.getFindNodeNumber() < 10)
+                .search();
+        Assert.assertEquals(SearchResult.StopReason.GLOBAL_RULE, result.getStopReason());
+        Assert.assertEquals(10, result.getFindNodeNumber());
+    }
+
+    @Test
+    public void backwardSearch()
+    {
+        Graph<Void, Void> indexed = Graph.<Void, Void>builder()
+                .addNode("a1")
+                .addNode("a2")
+                .addNode("a3")
+                .addNode("a4")
+                .addEdge("a1", "a3")
+                .addEdge("a2", "a3")
+                .addEdge("a3", "a4")
+                .withInEdgeIndex()
+                .create();
+
+        Assert.assertEquals(1, indexed.getNode("a4").prevNodes().size());
+        Assert.assertEquals(2, indexed.getNode("a3").prevNodes().size());
+        Assert.assertTrue(indexed.getNode("a1").prevNodes().isEmpty());
+
+        SearchResult<Void, Void> result = indexed.search()
+                .beginNode("a4")
+                .direction(SearchBuilder.Direction.BACKWARD)
+                .nextRule(route -> true)
+                .search();
+        Assert.assertEquals(Arrays.asList("a4-a3", "a4-a3-a1", "a4-a3-a2"), result.getRoutes().stream()
+                .map(route -> String.join("-", route.getIds())).sorted().collect(Collectors.toList()));
+        Assert.assertEquals(SearchResult.StopReason.COMPLETED, result.getStopReason());
+
+        try {
+            graph.search().direction(SearchBuilder.Direction.BACKWARD).nextRule(route -> true).search();
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().startsWith("BACKWARD search requires in-edge index"));
+        }
+        try {
+            graph.getNode("a1").prevNodes();
+            Assert.fail();
+        }
+        catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void listenerMetrics()
+    {
+        for (SearchBuilder.Optimizer optimizer : optimizers) {
+            AtomicReference<SearchMetrics> reference = new AtomicReference<>();
+            graph.search()
+                    .optimizer(optimizer)
+                    .beginNode("a1")
+                    .nextRule(route -> route.size() < 5)
+                    .maxDepth(10)
+                    .listener(reference::set)
+                    .search();
+            SearchMetrics metrics = reference.get();
+            Assert.assertEquals(5, metrics.getExpansions());
+            Assert.assertEquals(4, metrics.getAcceptedRoutes());
+            Assert.assertEquals(1, metrics.getRejectedRoutes());
+            Assert.assertEquals(5, metrics.getMaxDepth());
+            Assert.assertTrue(metrics.getFrontierPeak() >= 1);
+            Assert.assertTrue(metrics.getTotalNanos() >= metrics.getNextRuleNanos());
+            Assert.assertTrue(metrics.getEngineNanos() >= 0);
+            Assert.assertEquals(SearchResult.StopReason.COMPLETED, metrics.getStopReason());
+        }
+    }
+
+    @Test
+    public void listenerCalledWhenSearchFails()
+    {
+        for (SearchBuilder.Optimizer optimizer : optimizers) {
+            AtomicReference<SearchMetrics> reference = new AtomicReference<>();
+            try {
+                graph.search()
+                        .optimizer(optimizer)
+                        .beginNode("a1")
+                        .nextRule(route -> {
+                            throw new IllegalStateException("rule failed");
+                        })
+                        .listener(reference::set)
+                        .search();
+                Assert.fail();
+            }
+            catch (IllegalStateException e) {
+                Assert.assertEquals("rule failed", e.getMessage());
+                Assert.assertSame(e, reference.get().getFailure());
+            }
+            Assert.assertEquals(SearchResult.StopReason.FAILED, reference.get().getStopReason());
+        }
+    }
+}
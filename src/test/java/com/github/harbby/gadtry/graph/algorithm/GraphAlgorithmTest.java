@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.algorithm;
+
+import com.github.harbby.gadtry.graph.Graph;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class GraphAlgorithmTest
+{
+    /*
+     * a1 -> a2 -> a3 -> a1 (环)
+     * a3 -> a4 -> a5, a5 -> a4 (环)
+     * a6 -> a7 (另一个弱连通分量)
+     */
+    private final Graph<Void, Void> graph = Graph.<Void, Void>builder()
+            .addNode("a1").addNode("a2").addNode("a3").addNode("a4")
+            .addNode("a5").addNode("a6").addNode("a7")
+            .addEdge("a1", "a2")
+            .addEdge("a2", "a3")
+            .addEdge("a3", "a1")
+            .addEdge("a3", "a4")
+            .addEdge("a4", "a5")
+            .addEdge("a5", "a4")
+            .addEdge("a6", "a7")
+            .create();
+
+    private final AdjacencyGraph adjacency = AdjacencyGraph.of(graph);
+
+    @Test
+    public void adjacencyGraphOf()
+    {
+        Assert.assertEquals(7, adjacency.getNodeCount());
+        Assert.assertEquals(7, adjacency.getEdgeCount());
+        Assert.assertEquals("a3", adjacency.getId(2));
+        Assert.assertEquals(2, adjacency.outDegree(2));
+        Assert.assertEquals(2, adjacency.inDegree(3));
+
+        AdjacencyGraph undirected = adjacency.toUndirected();
+        Assert.assertEquals(12, undirected.getEdgeCount());  //a4<->a5合并为一条无向边
+    }
+
+    @Test
+    public void weakConnectedComponents()
+    {
+        int[] components = ConnectedComponents.weak(adjacency);
+        Assert.assertArrayEquals(new int[] {0, 0, 0, 0, 0, 1, 1}, components);
+        Assert.assertEquals(2, ConnectedComponents.count(components));
+    }
+
+    @Test
+    public void strongConnectedComponents()
+    {
+        int[] components = ConnectedComponents.strong(adjacency);
+        Assert.assertEquals(4, ConnectedComponents.count(components));
+        Assert.assertEquals(components[0], components[1]);
+        Assert.assertEquals(components[0], components[2]);
+        Assert.assertEquals(components[3], components[4]);
+        Assert.assertNotEquals(components[0], components[3]);
+        Assert.assertNotEquals(components[5], components[6]);
+    }
+
+    @Test
+    public void strongConnectedComponentsDeepChainNoStackOverflow()
+    {
+        int size = 200_000;
+        String[] ids = new String[size];
+        int[] sources = new int[size];
+        int[] targets = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = String.valueOf(i);
+            sources[i] = i;
+            targets[i] = (i + 1) % size;
+        }
+        AdjacencyGraph ring = AdjacencyGraph.of(ids, sources, targets);
+        Assert.assertEquals(1, ConnectedComponents.count(ConnectedComponents.strong(ring)));
+        Assert.assertEquals(1, ConnectedComponents.count(ConnectedComponents.weak(ring)));
+    }
+
+    @Test
+    public void triangleCount()
+    {
+        Assert.assertEquals(1, TriangleCount.count(adjacency));
+
+        //K4 有4个三角形
+        String[] ids = {"1", "2", "3", "4"};
+        AdjacencyGraph k4 = AdjacencyGraph.of(ids, new int[] {0, 0, 0, 1, 1, 2, 3}, new int[] {1, 2, 3, 2, 3, 3, 0});
+        Assert.assertEquals(4, TriangleCount.count(k4));
+    }
+
+    @Test
+    public void pageRank()
+    {
+        double[] rank = PageRank.run(adjacency, 0.85, 100, 1e-10);
+        Assert.assertEquals(1.0, Arrays.stream(rank).sum(), 1e-9);
+        Assert.assertTrue(rank[6] > rank[5]);  //a7有入边, a6没有
+        Assert.assertEquals(rank[3], rank[4], 0.1);
+
+        //对称的环上所有节点rank相同
+        AdjacencyGraph ring = AdjacencyGraph.of(new String[] {"1", "2", "3"}, new int[] {0, 1, 2}, new int[] {1, 2, 0});
+        for (double value : PageRank.run(ring, 0.85, 20, 1e-12)) {
+            Assert.assertEquals(1.0 / 3, value, 1e-12);
+        }
+    }
+
+    @Test
+    public void degreeDistribution()
+    {
+        DegreeDistribution distribution = DegreeDistribution.of(adjacency);
+        Assert.assertArrayEquals(new long[] {1, 5, 1}, distribution.getOutDegreeHistogram());
+        Assert.assertArrayEquals(new long[] {1, 5, 1}, distribution.getInDegreeHistogram());
+        Assert.assertEquals(2, distribution.getMaxOutDegree());
+        Assert.assertEquals(1.0, distribution.getMeanDegree(), 1e-12);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.graph.impl;
+
+import com.github.harbby.gadtry.graph.Graph;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+public class GraphUtilTest
+{
+    private final Graph<String, String> graph = Graph.<String, String>builder()
+            .name("test1")
+            .addNode("a1", "root")
+            .addNode("a2")
+            .addNode("a3")
+            .addNode("a4")
+            .addEdge("a1", "a2", "x<y")
+            .addEdge("a1", "a3")
+            .addEdge("a2", "a4")
+            .addEdge("a4", "a2")
+            .create();
+
+    @Test
+    public void printShowDeepGraphNoStackOverflow()
+            throws IOException
+    {
+        int depth = 10_000;
+        Graph.GraphBuilder<Void, Void> builder = Graph.builder();
+        builder.addNode("0");
+        for (int i = 1; i < depth; i++) {
+            builder.addNode(String.valueOf(i));
+            builder.addEdge(String.valueOf(i - 1), String.valueOf(i));
+        }
+        Graph<Void, Void> deepGraph = builder.create();
+
+        CountingAppendable out = new CountingAppendable();
+        deepGraph.printShow(out, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Assert.assertEquals(depth + 1, out.lines);
+
+        out = new CountingAppendable();
+        deepGraph.printShow(out, "0", 10, 10);
+        Assert.assertEquals(11, out.lines);
+    }
+
+    @Test
+    public void printShowMaxDepthAndCycle()
+            throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        graph.printShow(writer, "a1", 2, Integer.MAX_VALUE);
+        List<String> lines = Arrays.asList(writer.toString().split("\n"));
+        Assert.assertTrue(lines.contains("     ├────a2 ...") || lines.contains("     └────a2 ..."));
+
+        writer = new StringWriter();
+        graph.printShow(writer, "a2", Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Assert.assertEquals(Arrays.asList("/", "└────a2", "     └────a4", "          └────a2 (cycle)"),
+                Arrays.asList(writer.toString().split("\n")));
+    }
+
+    @Test
+    public void printShowMaxWidth()
+            throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        graph.printShow(writer, "a1", Integer.MAX_VALUE, 1);
+        List<String> lines = Arrays.asList(writer.toString().split("\n"));
+        Assert.assertEquals("     └────...", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void printShowListEqualsAppendable()
+            throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        graph.printShow(writer, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Assert.assertEquals(graph.printShow(), Arrays.asList(writer.toString().split("\n")));
+    }
+
+    @Test
+    public void printDot()
+            throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        graph.printDot(writer);
+        String dot = writer.toString();
+        Assert.assertTrue(dot.startsWith("digraph \"test1\" {"));
+        Assert.assertTrue(dot.contains("\"a1\" [tooltip=\"root\"];"));
+        Assert.assertTrue(dot.contains("\"a1\" -> \"a2\" [label=\"x<y\"];"));
+        Assert.assertTrue(dot.contains("\"a4\" -> \"a2\";"));
+    }
+
+    @Test
+    public void printGraphML()
+            throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        graph.printGraphML(writer);
+        String xml = writer.toString();
+        Assert.assertTrue(xml.contains("<graph id=\"test1\" edgedefault=\"directed\">"));
+        Assert.assertTrue(xml.contains("<node id=\"a1\"><data key=\"d0\">root</data></node>"));
+        Assert.assertTrue(xml.contains("<edge source=\"a1\" target=\"a2\"><data key=\"d1\">x&lt;y</data></edge>"));
+        Assert.assertTrue(xml.contains("<edge source=\"a4\" target=\"a2\"/>"));
+    }
+
+    private static class CountingAppendable
+            implements Appendable
+    {
+        private int lines;
+
+        @Override
+        public Appendable append(CharSequence csq)
+        {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end)
+        {
+            for (int i = start; i < end; i++) {
+                append(csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c)
+        {
+            if (c == '\n') {
+                lines++;
+            }
+            return this;
+        }
+    }
+}
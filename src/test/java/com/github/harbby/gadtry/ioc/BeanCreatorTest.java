@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import com.github.harbby.gadtry.function.Creator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class BeanCreatorTest
+{
+    @Test
+    public void generateBeanCreator()
+    {
+        ConstructionPlan<Service> plan = ConstructionPlan.of(Service.class);
+        BeanCreator<Service> creator = plan.getBeanCreator();
+        Assert.assertNotNull(creator);
+        Assert.assertEquals(Service.class.getName() + BeanCreatorGenerator.CLASS_SUFFIX, creator.getClass().getName());
+        Assert.assertSame(creator, plan.getBeanCreator());
+
+        HashSet<String> set = new HashSet<>();
+        Service service = creator.newInstance(new Object[] {set});
+        Assert.assertSame(set, service.set);
+    }
+
+    @Test
+    public void iocFactoryUseBeanCreator()
+    {
+        Bean bean = binder -> binder.bind(Service.class).noScope();
+        IocFactory iocFactory = new IocFactoryImpl(BindMapping.create(IocFactory.ReplaceHandler.INSTANCE, true, bean), new Bean[] {bean}, true);
+
+        Service service = iocFactory.getInstance(Service.class);
+        Assert.assertNotNull(service.set);
+        Assert.assertNotNull(service.list);   //direct
+        Assert.assertNotNull(service.getMap());  //private field, 使用反射注入
+        Assert.assertNotSame(service, iocFactory.getInstance(Service.class));
+    }
+
+    @Test
+    public void privateConstructorFallbackToReflection()
+    {
+        Assert.assertNull(ConstructionPlan.of(PrivateCreator.class).getBeanCreator());
+        InternalContext context = InternalContext.of(BindMapping.create(), aClass -> null, true);
+        Assert.assertEquals("value", context.get(PrivateCreator.class).get());
+    }
+
+    @Test
+    public void constructionPlanUseCompiledBeanCreator()
+    {
+        ConstructionPlan<CompiledService> plan = ConstructionPlan.of(CompiledService.class);
+        Assert.assertTrue(plan.isCompiled());
+        Assert.assertTrue(plan.getBeanCreator() instanceof BeanCreatorTest$CompiledService$$GadtryBeanCreator);
+        Assert.assertArrayEquals(new Class<?>[] {HashSet.class}, plan.getParameterTypes());
+        Assert.assertArrayEquals(new Class<?>[] {ArrayList.class}, plan.getFieldTypes());
+
+        //不设置generateBeanCreator时也总是使用编译期生成的creator
+        IocFactory iocFactory = IocFactory.create(binder -> binder.bind(CompiledService.class).noScope());
+        CompiledService service = iocFactory.getInstance(CompiledService.class);
+        Assert.assertTrue(service.byCompiledCreator);
+        Assert.assertNotNull(service.set);
+        Assert.assertNotNull(service.list);
+    }
+
+    /**
+     * 模拟gadtry-processor的生成结果, see: {@link BeanCreatorTest$CompiledService$$GadtryBeanCreator}
+     */
+    public static class CompiledService
+    {
+        private final HashSet<String> set;
+        private final boolean byCompiledCreator;
+
+        @Autowired
+        ArrayList<String> list;
+
+        @Autowired
+        public CompiledService(HashSet<String> set)
+        {
+            this(set, false);
+        }
+
+        CompiledService(HashSet<String> set, boolean byCompiledCreator)
+        {
+            this.set = set;
+            this.byCompiledCreator = byCompiledCreator;
+        }
+    }
+
+    public static class Service
+    {
+        private final HashSet<String> set;
+
+        @Autowired
+        ArrayList<String> list;
+
+        @Autowired
+        private HashMap<String, String> map;
+
+        @Autowired
+        public Service(HashSet<String> set)
+        {
+            this.set = set;
+        }
+
+        public HashMap<String, String> getMap()
+        {
+            return map;
+        }
+    }
+
+    public static class PrivateCreator
+            implements Creator<String>
+    {
+        private PrivateCreator() {}
+
+        @Override
+        public String get()
+        {
+            return "value";
+        }
+    }
+}
+
+@SuppressWarnings({"unchecked", "checkstyle:TypeName"})  //与processor生成的class同名: bean的binary name + $$GadtryBeanCreator
+final class BeanCreatorTest$CompiledService$$GadtryBeanCreator
+        implements CompiledBeanCreator<BeanCreatorTest.CompiledService>
+{
+    @Override
+    public BeanCreatorTest.CompiledService newInstance(Object[] args)
+    {
+        return new BeanCreatorTest.CompiledService((HashSet<String>) args[0], true);
+    }
+
+    @Override
+    public void setField(BeanCreatorTest.CompiledService instance, int index, Object value)
+    {
+        if (index == 0) {
+            instance.list = (ArrayList<String>) value;
+            return;
+        }
+        throw new IllegalArgumentException("field " + index + " is not accessible");
+    }
+
+    @Override
+    public Class<?>[] getParameterTypes()
+    {
+        return new Class<?>[] {HashSet.class};
+    }
+
+    @Override
+    public Class<?>[] getFieldTypes()
+    {
+        return new Class<?>[] {ArrayList.class};
+    }
+}
@@ -19,9 +19,15 @@ import com.github.harbby.gadtry.aop.AopFactory;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BindMappingTest
 {
@@ -94,4 +100,79 @@ public class BindMappingTest
     {
         IocFactory.create(binder -> binder.bind(Map.class).noScope());
     }
+
+    @Test
+    public void buildReturnImmutableSnapshot()
+    {
+        BindMapping.Builder builder = BindMapping.builder();
+        builder.bind(Map.class, HashMap::new);
+        BindMapping bindMapping = builder.build();
+        builder.bind(Properties.class, Properties::new);
+
+        Assert.assertNotNull(bindMapping.get(Map.class));
+        Assert.assertNull(bindMapping.get(Properties.class));
+        Assert.assertEquals(1, bindMapping.getAllBeans().size());
+    }
+
+    @Test
+    public void singletonCreatedOnceUnderConcurrency()
+            throws Exception
+    {
+        AtomicInteger count = new AtomicInteger();
+        BindMapping bindMapping = BindMapping.create(binder -> binder.bind(Map.class).byCreator(() -> {
+            count.incrementAndGet();
+            return new HashMap();
+        }).withSingle());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(pool.submit(() -> bindMapping.get(Map.class).get()));
+            }
+            Object first = futures.get(0).get();
+            for (Future<Object> future : futures) {
+                Assert.assertSame(first, future.get());
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(1, count.get());
+    }
+
+    @Test
+    public void threadLocalScope()
+            throws Exception
+    {
+        BindMapping bindMapping = BindMapping.create(binder -> binder.bind(ArrayList.class).withThreadLocal());
+        Object instance = bindMapping.get(ArrayList.class).get();
+        Assert.assertSame(instance, bindMapping.get(ArrayList.class).get());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Object other = pool.submit(() -> bindMapping.get(ArrayList.class).get()).get();
+            Assert.assertNotSame(instance, other);
+            Assert.assertSame(other, pool.submit(() -> bindMapping.get(ArrayList.class).get()).get());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void scopeLambdaSupportsOnlySingleton()
+    {
+        AtomicInteger singles = new AtomicInteger();
+        Binder.Scope scope = () -> singles.incrementAndGet();
+        scope.withScope(BeanScope.SINGLETON);
+        Assert.assertEquals(1, singles.get());
+        try {
+            scope.withThreadLocal();
+            Assert.fail();
+        }
+        catch (UnsupportedOperationException ignored) {
+        }
+        Assert.assertEquals(1, singles.get());
+    }
 }
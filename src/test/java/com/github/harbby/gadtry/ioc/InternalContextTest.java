@@ -15,6 +15,7 @@
  */
 package com.github.harbby.gadtry.ioc;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -67,6 +68,39 @@ public class InternalContextTest
         context.get(DeadDependency3.class);
     }
 
+    @Test
+    public void constructionPlanCached()
+    {
+        ConstructionPlan<FieldInject> plan = ConstructionPlan.of(FieldInject.class);
+        Assert.assertSame(plan, ConstructionPlan.of(FieldInject.class));
+        Assert.assertEquals(1, plan.getFields().length);
+        Assert.assertEquals(0, plan.getParameterTypes().length);
+
+        InternalContext context = InternalContext.of(BindMapping.create(), aClass -> null);
+        FieldInject instance = context.get(FieldInject.class);
+        Assert.assertNotNull(instance.hashSet);
+        Assert.assertNotSame(instance.hashSet, context.get(FieldInject.class).hashSet);
+    }
+
+    @Test
+    public void constructorCycleCheckedByPlan()
+    {
+        Assert.assertTrue(ConstructionPlan.of(DeadDependency1.class).hasConstructorCycle());
+        Assert.assertTrue(ConstructionPlan.of(DeadDependency3.class).hasConstructorCycle());
+        Assert.assertFalse(ConstructionPlan.of(FieldInject.class).hasConstructorCycle());
+
+        //DeadDependency2由绑定的creator创建, 依赖环被打断
+        BindMapping bindMapping = BindMapping.create(binder -> binder.bind(DeadDependency2.class).byCreator(() -> new DeadDependency2(null)));
+        InternalContext context = InternalContext.of(bindMapping, aClass -> null);
+        Assert.assertNotNull(context.get(DeadDependency1.class));
+    }
+
+    public static class FieldInject
+    {
+        @Autowired
+        private HashSet hashSet;
+    }
+
     public static class DeadDependency1
     {
         @Autowired
@@ -24,6 +24,7 @@ import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -32,6 +33,8 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 
 public class IocFactoryTest
@@ -71,6 +74,70 @@ public class IocFactoryTest
         }
     }
 
+    @Test
+    public void initSingletonsInDependencyOrder()
+    {
+        IocFactory iocFactory = IocFactory.create(binder -> {
+            binder.bind(EagerService.class).withSingle();
+            binder.bind(EagerDao.class).withSingle();
+            binder.bind(Set.class).by(HashSet.class).withSingle();
+            binder.bind(LinkedHashSet.class).noScope();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Map<Class<?>, Long> report = iocFactory.initSingletons(executor);
+            List<Class<?>> order = new ArrayList<>(report.keySet());
+            Assert.assertEquals(3, order.size());
+            Assert.assertFalse(order.contains(LinkedHashSet.class));
+            Assert.assertTrue(order.indexOf(EagerDao.class) < order.indexOf(EagerService.class));
+            Assert.assertTrue(report.values().stream().allMatch(time -> time >= 0));
+
+            EagerService service = iocFactory.getInstance(EagerService.class);
+            Assert.assertSame(iocFactory.getInstance(EagerDao.class), service.dao);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void initSingletonsFollowsUnannotatedConstructor()
+    {
+        IocFactory iocFactory = IocFactory.create(binder -> {
+            binder.bind(PlainService.class).withSingle();
+            binder.bind(EagerDao.class).withSingle();
+        });
+        //同步executor下依赖必须先于依赖方创建, 否则EagerDao会在PlainService构造期间被创建
+        Map<Class<?>, Long> report = iocFactory.initSingletons(Runnable::run);
+        Assert.assertEquals(Arrays.asList(EagerDao.class, PlainService.class), new ArrayList<>(report.keySet()));
+        Assert.assertSame(iocFactory.getInstance(EagerDao.class), iocFactory.getInstance(PlainService.class).dao);
+    }
+
+    public static class PlainService
+    {
+        private final EagerDao dao;
+
+        public PlainService(EagerDao dao)
+        {
+            this.dao = dao;
+        }
+    }
+
+    public static class EagerService
+    {
+        private final EagerDao dao;
+
+        @Autowired
+        public EagerService(EagerDao dao)
+        {
+            this.dao = dao;
+        }
+    }
+
+    public static class EagerDao
+    {
+    }
+
     public static class DeadDependency1
     {
         @Autowired private DeadDependency2 deadDependency2;
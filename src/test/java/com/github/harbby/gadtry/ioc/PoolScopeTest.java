@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PoolScopeTest
+{
+    @Test
+    public void borrowAndRelease()
+    {
+        PoolScope pool = PoolScope.create(1);
+        IocFactory iocFactory = IocFactory.create(binder -> binder.bind(ArrayList.class).withScope(pool));
+
+        ArrayList a1 = iocFactory.getInstance(ArrayList.class);
+        ArrayList a2 = iocFactory.getInstance(ArrayList.class);
+        Assert.assertNotSame(a1, a2);
+
+        pool.release(ArrayList.class, a1);
+        pool.release(ArrayList.class, a2);  //maxIdle = 1, discarded
+        Assert.assertSame(a1, iocFactory.getInstance(ArrayList.class));
+
+        PoolScope.Metrics metrics = pool.getMetrics(ArrayList.class);
+        Assert.assertEquals(3, metrics.getBorrowed());
+        Assert.assertEquals(2, metrics.getCreated());
+        Assert.assertEquals(1, metrics.getReturned());
+        Assert.assertEquals(1, metrics.getDiscarded());
+        Assert.assertEquals(0, metrics.getIdle());
+    }
+
+    @Test
+    public void poolWithCreator()
+    {
+        PoolScope pool = PoolScope.create(4);
+        IocFactory iocFactory = IocFactory.create(binder -> binder.bind(Map.class).byCreator(HashMap::new).withScope(pool));
+        Map map = iocFactory.getInstance(Map.class);
+        pool.release(Map.class, map);
+        Assert.assertSame(map, iocFactory.getInstance(Map.class));
+        Assert.assertEquals(1, pool.getMetrics(Map.class).getCreated());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseUnboundKey()
+    {
+        PoolScope.create(1).release(ArrayList.class, new ArrayList());
+    }
+
+    @Test
+    public void releaseMustOwnInstance()
+    {
+        PoolScope pool = PoolScope.create(2);
+        IocFactory iocFactory = IocFactory.create(binder -> {
+            binder.bind(ArrayList.class).withScope(pool);
+            binder.bind(HashMap.class).withScope(pool);
+        });
+        ArrayList list = iocFactory.getInstance(ArrayList.class);
+        try {
+            pool.release(ArrayList.class, new ArrayList());
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            Assert.assertEquals("instance is not borrowed from this PoolScope or already released", e.getMessage());
+        }
+        try {
+            Class otherKey = HashMap.class;
+            pool.release(otherKey, list);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            Assert.assertEquals("instance is borrowed by class java.util.ArrayList, not class java.util.HashMap", e.getMessage());
+        }
+        pool.release(ArrayList.class, list);
+        try {
+            pool.release(ArrayList.class, list);  //double release
+            Assert.fail();
+        }
+        catch (IllegalStateException ignored) {
+        }
+        Assert.assertEquals(1, pool.getMetrics(ArrayList.class).getIdle());
+        Assert.assertEquals(0, pool.getMetrics(ArrayList.class).getActive());
+    }
+
+    @Test
+    public void maxTotal()
+    {
+        PoolScope pool = PoolScope.create(1, 2);
+        IocFactory iocFactory = IocFactory.create(binder -> binder.bind(ArrayList.class).withScope(pool));
+        ArrayList a1 = iocFactory.getInstance(ArrayList.class);
+        iocFactory.getInstance(ArrayList.class);
+        try {
+            iocFactory.getInstance(ArrayList.class);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().startsWith("PoolScope exhausted"));
+        }
+        pool.release(ArrayList.class, a1);
+        Assert.assertSame(a1, iocFactory.getInstance(ArrayList.class));
+        Assert.assertEquals(2, pool.getMetrics(ArrayList.class).getActive());
+    }
+
+    @Test
+    public void sharedByTwoFactories()
+    {
+        PoolScope pool = PoolScope.create(1);
+        Bean bean = binder -> binder.bind(ArrayList.class).withScope(pool);
+        IocFactory factory1 = IocFactory.create(bean);
+        IocFactory factory2 = IocFactory.create(bean);
+
+        ArrayList a1 = factory1.getInstance(ArrayList.class);
+        ArrayList a2 = factory2.getInstance(ArrayList.class);
+        pool.release(ArrayList.class, a1);
+        pool.release(ArrayList.class, a2);
+        //每个factory有自己的池, 归还的实例回到借出它的池
+        Assert.assertSame(a1, factory1.getInstance(ArrayList.class));
+        Assert.assertSame(a2, factory2.getInstance(ArrayList.class));
+        Assert.assertEquals(4, pool.getMetrics(ArrayList.class).getBorrowed());
+        Assert.assertEquals(2, pool.getMetrics(ArrayList.class).getCreated());
+    }
+}
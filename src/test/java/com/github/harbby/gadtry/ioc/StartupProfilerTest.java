@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 The GadTry Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.harbby.gadtry.ioc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class StartupProfilerTest
+{
+    private final StartupProfiler profiler = new StartupProfiler();
+
+    private IocFactory create(Bean bean)
+    {
+        IocFactory.ReplaceHandler handler = new IocFactory.ReplaceHandler()
+        {
+            @Override
+            public <T> T replace(Class<T> key, T instance)
+            {
+                long start = System.nanoTime();
+                while (System.nanoTime() == start) {
+                    Thread.yield();  //确保代理耗时 > 0
+                }
+                return instance;
+            }
+        };
+        return new IocFactoryImpl(BindMapping.create(handler, false, profiler, bean), new Bean[] {bean}, false, profiler);
+    }
+
+    @Test
+    public void recordConstructionTree()
+    {
+        IocFactory iocFactory = create(binder -> binder.bind(Service.class).withSingle());
+        iocFactory.getInstance(Service.class);
+
+        List<StartupProfiler.Record> records = profiler.getRecords();
+        Assert.assertEquals(1, records.size());
+        StartupProfiler.Record service = records.get(0);
+        Assert.assertEquals(Service.class, service.getBeanClass());
+        Assert.assertTrue(service.getProxyNanos() > 0);
+        Assert.assertEquals(Arrays.asList(Dao.class), service.getDependencies().stream()
+                .map(StartupProfiler.Record::getBeanClass).collect(Collectors.toList()));
+        Assert.assertTrue(service.getTotalNanos() >= service.getDependencies().get(0).getTotalNanos());
+
+        Assert.assertEquals(Arrays.asList(Service.class, Dao.class), profiler.getCriticalPath().stream()
+                .map(StartupProfiler.Record::getBeanClass).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void exportJsonAndFolded()
+            throws IOException
+    {
+        IocFactory iocFactory = create(binder -> binder.bind(Service.class).withSingle());
+        iocFactory.getInstance(Service.class);
+
+        StringBuilder json = new StringBuilder();
+        profiler.writeJson(json);
+        Assert.assertTrue(json.toString().startsWith("{\"totalNanos\":"));
+        Assert.assertTrue(json.toString().contains("\"class\":\"" + Dao.class.getName() + "\""));
+        Assert.assertTrue(json.toString().contains("\"criticalPath\":[{\"class\":\"" + Service.class.getName() + "\""));
+
+        StringBuilder folded = new StringBuilder();
+        profiler.writeFolded(folded);
+        List<String> lines = Arrays.asList(folded.toString().split("\n"));
+        Assert.assertTrue(lines.stream().anyMatch(line -> line.startsWith(Service.class.getName() + ";[proxy] ")));
+        Assert.assertTrue(lines.stream().allMatch(line -> line.matches("[^ ]+ [0-9]+")));
+    }
+
+    public static class Service
+    {
+        @Autowired
+        public Service(Dao dao) {}
+    }
+
+    public static class Dao
+    {
+    }
+}